@@ -0,0 +1,80 @@
+package ru.alexbykov.nopermission;
+
+import android.app.Activity;
+import android.content.Context;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Host, which keeps permissions state in memory. Context is mockable activity,
+ * so dialog configuration works, but dialog can't be shown
+ */
+class BenchmarkPermissionBackend implements PermissionBackend {
+
+
+    private final Activity activity = new Activity();
+    private final Set<String> grantedPermissions = new HashSet<>();
+    String[] requestedPermissions;
+    int requestCode;
+
+
+    BenchmarkPermissionBackend grant(String... permissions) {
+        for (String permission : permissions) {
+            grantedPermissions.add(permission);
+        }
+        return this;
+    }
+
+
+    static String[] permissions(int count) {
+        final String[] permissions = new String[count];
+        for (int i = 0; i < count; i++) {
+            permissions[i] = "android.permission.BENCHMARK_" + i;
+        }
+        return permissions;
+    }
+
+
+    @Override
+    public Context getContext() {
+        return activity;
+    }
+
+    @Override
+    public Activity getActivity() {
+        return null;
+    }
+
+    @Override
+    public PermissionSet getDeclaredPermissions() {
+        return null;
+    }
+
+    @Override
+    public boolean isRuntimePermissions() {
+        return true;
+    }
+
+    @Override
+    public boolean isGranted(String permission) {
+        return grantedPermissions.contains(permission);
+    }
+
+    @Override
+    public PermissionSet getGrantedPermissions() {
+        return null;
+    }
+
+    @Override
+    public boolean shouldShowRationale(String permission) {
+        return true;
+    }
+
+    @Override
+    public boolean requestPermissions(String[] permissions, int requestCode) {
+        this.requestedPermissions = permissions;
+        this.requestCode = requestCode;
+        return true;
+    }
+}
@@ -0,0 +1,69 @@
+package ru.alexbykov.nopermission;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole configuration chain, as it's written in button click handler, with granted permissions.
+ * Difference between benchmarks is the cost of rationale dialog setup, which is not shown
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DialogBeforeRunBenchmark {
+
+
+    private static final int TITLE_RES = 1;
+    private static final int MESSAGE_RES = 2;
+    private static final int POSITIVE_BUTTON_RES = 3;
+    private Blackhole blackhole;
+    private String[] permissions;
+    private PermissionHelper permissionHelper;
+    private final Runnable success = new Runnable() {
+        @Override
+        public void run() {
+            blackhole.consume(true);
+        }
+    };
+    private final Runnable denied = new Runnable() {
+        @Override
+        public void run() {
+            blackhole.consume(false);
+        }
+    };
+
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        permissions = BenchmarkPermissionBackend.permissions(1);
+        permissionHelper = new PermissionHelper(new BenchmarkPermissionBackend().grant(permissions));
+    }
+
+
+    @Benchmark
+    public void configureAndRun() {
+        permissionHelper.check(permissions)
+                .onSuccess(success)
+                .onDenied(denied)
+                .run();
+    }
+
+
+    @Benchmark
+    public void configureWithDialogAndRun() {
+        permissionHelper.check(permissions)
+                .withDialogBeforeRun(TITLE_RES, MESSAGE_RES, POSITIVE_BUTTON_RES)
+                .onSuccess(success)
+                .onDenied(denied)
+                .run();
+    }
+}
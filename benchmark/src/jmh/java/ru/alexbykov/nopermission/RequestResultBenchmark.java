@@ -0,0 +1,75 @@
+package ru.alexbykov.nopermission;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * onRequestPermissionsResult with all permissions granted.
+ * Each invocation needs pending request, so it's started in invocation level setup,
+ * which adds some noise to results of such short method. Granted permissions are cached
+ * by state of host, so each request has new host, otherwise only first one would reach system
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RequestResultBenchmark {
+
+
+    @Param({"1", "5", "20"})
+    public int permissionsCount;
+    private Blackhole blackhole;
+    private String[] permissions;
+    private int[] grantResults;
+    private BenchmarkPermissionBackend host;
+    private PermissionHelper permissionHelper;
+    private final Runnable success = new Runnable() {
+        @Override
+        public void run() {
+            blackhole.consume(true);
+        }
+    };
+    private final Runnable denied = new Runnable() {
+        @Override
+        public void run() {
+            blackhole.consume(false);
+        }
+    };
+
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        permissions = BenchmarkPermissionBackend.permissions(permissionsCount);
+        grantResults = new int[permissionsCount];
+    }
+
+
+    @Setup(Level.Invocation)
+    public void startRequest() {
+        host = new BenchmarkPermissionBackend();
+        permissionHelper = new PermissionHelper(host)
+                .check(permissions)
+                .onSuccess(success)
+                .onDenied(denied);
+        permissionHelper.run();
+        if (host.requestedPermissions == null) {
+            throw new IllegalStateException("Permissions are not requested, benchmark doesn't measure result of request");
+        }
+    }
+
+
+    @Benchmark
+    public void onRequestPermissionsResult() {
+        permissionHelper.onRequestPermissionsResult(host.requestCode, host.requestedPermissions, grantResults);
+    }
+}
@@ -0,0 +1,77 @@
+package ru.alexbykov.nopermission;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * run() when all permissions are granted and when some of them are missing
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RunBenchmark {
+
+
+    private static final int PERMISSIONS_COUNT = 5;
+    private static final int GRANTED_COUNT = 3;
+    private Blackhole blackhole;
+    private PermissionHelper grantedHelper;
+    private PermissionHelper missingHelper;
+    private BenchmarkPermissionBackend missingHost;
+    private int[] deniedResults;
+    private final Runnable success = new Runnable() {
+        @Override
+        public void run() {
+            blackhole.consume(true);
+        }
+    };
+    private final Runnable denied = new Runnable() {
+        @Override
+        public void run() {
+            blackhole.consume(false);
+        }
+    };
+
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        final String[] permissions = BenchmarkPermissionBackend.permissions(PERMISSIONS_COUNT);
+        grantedHelper = new PermissionHelper(new BenchmarkPermissionBackend().grant(permissions))
+                .check(permissions)
+                .onSuccess(success)
+                .onDenied(denied);
+        missingHost = new BenchmarkPermissionBackend().grant(Arrays.copyOf(permissions, GRANTED_COUNT));
+        missingHelper = new PermissionHelper(missingHost).check(permissions);
+        deniedResults = new int[PERMISSIONS_COUNT - GRANTED_COUNT];
+        Arrays.fill(deniedResults, -1);
+    }
+
+
+    @Benchmark
+    public void runAllGranted() {
+        grantedHelper.run();
+    }
+
+
+    /**
+     * Listeners are cleared after each result, so they are set again as in real code.
+     * Result is denied, so next iteration asks the same permissions again
+     */
+    @Benchmark
+    public void runSomeMissing() {
+        missingHelper.onSuccess(success)
+                .onDenied(denied)
+                .run();
+        missingHelper.onRequestPermissionsResult(missingHost.requestCode, missingHost.requestedPermissions, deniedResults);
+    }
+}
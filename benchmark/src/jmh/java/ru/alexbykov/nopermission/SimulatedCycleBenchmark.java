@@ -0,0 +1,53 @@
+package ru.alexbykov.nopermission;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full request/result cycles on simulated backend with binder latency, user always denies
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SimulatedCycleBenchmark {
+
+
+    @Param({"0", "20000"})
+    public long binderLatencyNanos;
+    private PermissionHelper permissionHelper;
+    private PermissionRequest request;
+
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        final String[] permissions = BenchmarkPermissionBackend.permissions(3);
+        final SimulatedPermissionBackend backend = new SimulatedPermissionBackend()
+                .setBinderLatency(binderLatencyNanos)
+                .setDefaultAnswer(SimulatedPermissionBackend.ANSWER_DENY);
+        permissionHelper = backend.createHelper();
+        request = new PermissionRequest.Builder()
+                .check(permissions)
+                .onResult(new PermissionResultListener() {
+                    @Override
+                    public void onResult(PermissionResult result) {
+                        blackhole.consume(result);
+                    }
+                })
+                .build();
+    }
+
+
+    @Benchmark
+    public void requestResultCycle() {
+        permissionHelper.run(request);
+    }
+}
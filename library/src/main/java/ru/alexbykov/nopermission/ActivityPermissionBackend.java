@@ -0,0 +1,81 @@
+package ru.alexbykov.nopermission;
+
+import android.annotation.SuppressLint;
+import android.app.Activity;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.support.v4.app.ActivityCompat;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Backend for helpers, created in activities.
+ * Activity is referenced weakly, so helper, which outlives it, doesn't keep it in memory.
+ * When activity is collected, state of permissions is unknown and requests are not sent
+ */
+final class ActivityPermissionBackend implements PermissionBackend {
+
+
+    private final WeakReference<Activity> activityReference;
+
+
+    ActivityPermissionBackend(Activity activity) {
+        this.activityReference = new WeakReference<>(activity);
+    }
+
+
+    @Override
+    public Context getContext() {
+        return activityReference.get();
+    }
+
+    @Override
+    public Activity getActivity() {
+        return activityReference.get();
+    }
+
+    @Override
+    public PermissionSet getDeclaredPermissions() {
+        final Activity activity = activityReference.get();
+        return activity == null ? null : ManifestPermissionIndex.getDeclaredPermissions(activity);
+    }
+
+    @Override
+    public boolean isRuntimePermissions() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.M;
+    }
+
+    @Override
+    public boolean isGranted(String permission) {
+        final Activity activity = activityReference.get();
+        if (activity == null) {
+            throw new IllegalStateException("Activity is collected, state of " + permission + " is unknown");
+        }
+        return ActivityCompat.checkSelfPermission(activity, permission) == PackageManager.PERMISSION_GRANTED;
+    }
+
+    @Override
+    public PermissionSet getGrantedPermissions() {
+        final Activity activity = activityReference.get();
+        return activity == null ? null : PermissionSnapshot.readGrantedPermissions(activity);
+    }
+
+    @SuppressLint("NewApi")
+    @Override
+    public boolean shouldShowRationale(String permission) {
+        final Activity activity = activityReference.get();
+        return activity == null || activity.shouldShowRequestPermissionRationale(permission);
+    }
+
+    @SuppressLint("NewApi")
+    @Override
+    public boolean requestPermissions(String[] permissions, int requestCode) {
+        final Activity activity = activityReference.get();
+        if (activity == null) {
+            return false;
+        }
+        activity.requestPermissions(permissions, requestCode);
+        return true;
+    }
+}
@@ -0,0 +1,67 @@
+package ru.alexbykov.nopermission;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.support.v4.content.ContextCompat;
+
+/**
+ * Backend for checks without host, for example in Application.onCreate.
+ * Without activity rationale is unknown and permissions can't be asked,
+ * so rationale is reported as not shown and requests are not sent
+ */
+final class ContextPermissionBackend implements PermissionBackend {
+
+
+    private final Context context;
+
+
+    /**
+     * @param context application context, it lives as long as process, so it's referenced strongly
+     */
+    ContextPermissionBackend(Context context) {
+        this.context = context;
+    }
+
+
+    @Override
+    public Context getContext() {
+        return context;
+    }
+
+    @Override
+    public Activity getActivity() {
+        return null;
+    }
+
+    @Override
+    public PermissionSet getDeclaredPermissions() {
+        return ManifestPermissionIndex.getDeclaredPermissions(context);
+    }
+
+    @Override
+    public boolean isRuntimePermissions() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.M;
+    }
+
+    @Override
+    public boolean isGranted(String permission) {
+        return ContextCompat.checkSelfPermission(context, permission) == PackageManager.PERMISSION_GRANTED;
+    }
+
+    @Override
+    public PermissionSet getGrantedPermissions() {
+        return PermissionSnapshot.readGrantedPermissions(context);
+    }
+
+    @Override
+    public boolean shouldShowRationale(String permission) {
+        return false;
+    }
+
+    @Override
+    public boolean requestPermissions(String[] permissions, int requestCode) {
+        return false;
+    }
+}
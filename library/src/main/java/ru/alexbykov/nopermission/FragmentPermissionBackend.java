@@ -0,0 +1,89 @@
+package ru.alexbykov.nopermission;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.support.v4.app.ActivityCompat;
+import android.support.v4.app.Fragment;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Backend for helpers, created in support fragments.
+ * Fragment is referenced weakly, so helper, which outlives it, doesn't keep it and its activity in memory.
+ * When fragment is collected or detached, state of permissions is unknown and requests are not sent
+ */
+final class FragmentPermissionBackend implements PermissionBackend {
+
+
+    private final WeakReference<Fragment> fragmentReference;
+
+
+    FragmentPermissionBackend(Fragment fragment) {
+        this.fragmentReference = new WeakReference<>(fragment);
+    }
+
+
+    /**
+     * @return fragment, or null if it's collected. Its lifecycle is observed by helper
+     */
+    Fragment getFragment() {
+        return fragmentReference.get();
+    }
+
+
+    @Override
+    public Context getContext() {
+        final Fragment fragment = fragmentReference.get();
+        return fragment == null ? null : fragment.getContext();
+    }
+
+    @Override
+    public Activity getActivity() {
+        final Fragment fragment = fragmentReference.get();
+        return fragment == null ? null : fragment.getActivity();
+    }
+
+    @Override
+    public PermissionSet getDeclaredPermissions() {
+        final Context context = getContext();
+        return context == null ? null : ManifestPermissionIndex.getDeclaredPermissions(context);
+    }
+
+    @Override
+    public boolean isRuntimePermissions() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.M;
+    }
+
+    @Override
+    public boolean isGranted(String permission) {
+        final Context context = getContext();
+        if (context == null) {
+            throw new IllegalStateException("Fragment is not attached, state of " + permission + " is unknown");
+        }
+        return ActivityCompat.checkSelfPermission(context, permission) == PackageManager.PERMISSION_GRANTED;
+    }
+
+    @Override
+    public PermissionSet getGrantedPermissions() {
+        final Context context = getContext();
+        return context == null ? null : PermissionSnapshot.readGrantedPermissions(context);
+    }
+
+    @Override
+    public boolean shouldShowRationale(String permission) {
+        final Fragment fragment = fragmentReference.get();
+        return fragment == null || fragment.shouldShowRequestPermissionRationale(permission);
+    }
+
+    @Override
+    public boolean requestPermissions(String[] permissions, int requestCode) {
+        final Fragment fragment = fragmentReference.get();
+        if (fragment == null || !fragment.isAdded()) {
+            return false;
+        }
+        fragment.requestPermissions(permissions, requestCode);
+        return true;
+    }
+}
@@ -0,0 +1,192 @@
+package ru.alexbykov.nopermission;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Bundle;
+import android.support.v4.app.Fragment;
+import android.support.v4.app.FragmentManager;
+
+import java.lang.ref.WeakReference;
+
+/**
+ * Watches lifecycle of the activity, which hosts {@link PermissionHelper}
+ * (activity itself or activity of the fragment), and of the fragment, if helper is created in fragment.
+ * Hosts are referenced weakly, observer is unregistered when any of them is destroyed.
+ */
+final class HostLifecycleObserver implements Application.ActivityLifecycleCallbacks {
+
+
+    /**
+     * Host lifecycle events, which are interesting for {@link PermissionHelper}
+     */
+    interface Listener {
+
+        /**
+         * Called when host comes back to foreground after pause, for example after application settings screen.
+         * It's not called after system permission dialog of helper, if host was not stopped behind it,
+         * because result of that dialog is already known
+         */
+        void onHostReturned();
+
+        /**
+         * Called once, when host activity or host fragment destroyed. Observer is already unregistered at this moment.
+         */
+        void onHostDestroyed();
+    }
+
+
+    private static int sentRequestsCount;
+    private static WeakReference<Activity> lastRequestHost = new WeakReference<>(null);
+    private final Application application;
+    private final WeakReference<Activity> hostReference;
+    private final WeakReference<Fragment> fragmentHostReference;
+    private final Listener listener;
+    private WeakReference<FragmentManager> fragmentManagerReference = new WeakReference<>(null);
+    private int seenRequestsCount = sentRequestsCount;
+    private boolean paused;
+    private boolean stopped;
+    private boolean released;
+    final FragmentManager.FragmentLifecycleCallbacks fragmentCallbacks = new FragmentManager.FragmentLifecycleCallbacks() {
+        @Override
+        public void onFragmentDestroyed(FragmentManager fragmentManager, Fragment fragment) {
+            if (fragment == fragmentHostReference.get()) {
+                onHostDestroyed();
+            }
+        }
+    };
+
+
+    /**
+     * @param application  application, where activity lifecycle callbacks are registered
+     * @param host         activity, which lifecycle will be observed
+     * @param fragmentHost fragment, which hosts helper, or null if helper is created in activity
+     * @param listener     host lifecycle listener
+     */
+    HostLifecycleObserver(Application application, Activity host, Fragment fragmentHost, Listener listener) {
+        this.application = application;
+        this.hostReference = new WeakReference<>(host);
+        this.fragmentHostReference = new WeakReference<>(fragmentHost);
+        this.listener = listener;
+    }
+
+
+    /**
+     * This method register observer for host activity and host fragment
+     *
+     * @param host         activity, which lifecycle will be observed
+     * @param fragmentHost fragment, which lifecycle will be observed, or null if helper is created in activity
+     * @param listener     host lifecycle listener
+     * @return registered observer or null, if activity is not attached to application yet
+     */
+    static HostLifecycleObserver observe(Activity host, Fragment fragmentHost, Listener listener) {
+        final Application application = host.getApplication();
+        if (application == null) {
+            return null;
+        }
+        final HostLifecycleObserver observer = new HostLifecycleObserver(application, host, fragmentHost, listener);
+        observer.register();
+        return observer;
+    }
+
+
+    /**
+     * This method register observer in application and in fragment manager of host fragment, if it's attached.
+     * Retained fragment isn't destroyed with activity, so activity destroy releases observer too
+     */
+    void register() {
+        application.registerActivityLifecycleCallbacks(this);
+        final Fragment fragmentHost = fragmentHostReference.get();
+        final FragmentManager fragmentManager = fragmentHost == null ? null : fragmentHost.getFragmentManager();
+        if (fragmentManager != null) {
+            fragmentManager.registerFragmentLifecycleCallbacks(fragmentCallbacks, false);
+            fragmentManagerReference = new WeakReference<>(fragmentManager);
+        }
+    }
+
+
+    /**
+     * This method unregister observer
+     */
+    void release() {
+        released = true;
+        application.unregisterActivityLifecycleCallbacks(this);
+        final FragmentManager fragmentManager = fragmentManagerReference.get();
+        if (fragmentManager != null) {
+            fragmentManager.unregisterFragmentLifecycleCallbacks(fragmentCallbacks);
+        }
+    }
+
+
+    /**
+     * This method unregister observer and notify listener, if it's not released yet
+     */
+    private void onHostDestroyed() {
+        if (!released) {
+            release();
+            listener.onHostDestroyed();
+        }
+    }
+
+
+    /**
+     * This method remember, that system permission dialog is shown above host, so next return of host
+     * doesn't need to invalidate anything. It's shared by observers of all helpers of host,
+     * because state of permissions is shared by them too
+     *
+     * @param host activity, above which dialog is shown, or null if it's unknown
+     */
+    static void onRequestSent(Activity host) {
+        lastRequestHost = new WeakReference<>(host);
+        sentRequestsCount++;
+    }
+
+
+    @Override
+    public void onActivityResumed(Activity activity) {
+        final Activity host = hostReference.get();
+        if (activity == host && paused) {
+            final boolean returnedFromRequest = seenRequestsCount != sentRequestsCount
+                    && lastRequestHost.get() == host
+                    && !stopped;
+            seenRequestsCount = sentRequestsCount;
+            paused = false;
+            stopped = false;
+            if (!returnedFromRequest) {
+                listener.onHostReturned();
+            }
+        }
+    }
+
+    @Override
+    public void onActivityPaused(Activity activity) {
+        if (activity == hostReference.get()) {
+            paused = true;
+        }
+    }
+
+    @Override
+    public void onActivityDestroyed(Activity activity) {
+        if (activity == hostReference.get()) {
+            onHostDestroyed();
+        }
+    }
+
+    @Override
+    public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+    }
+
+    @Override
+    public void onActivityStarted(Activity activity) {
+    }
+
+    @Override
+    public void onActivityStopped(Activity activity) {
+        if (activity == hostReference.get()) {
+            stopped = true;
+        }
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+    }
+}
@@ -0,0 +1,79 @@
+package ru.alexbykov.nopermission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram with fixed millisecond buckets. Recording is lock-free and doesn't allocate.
+ * Bucket i counts values, which are less or equal {@link #getBucketBoundMillis(int)} and greater than previous bound,
+ * last bucket counts all values above the last bound.
+ */
+public final class LatencyHistogram {
+
+
+    private static final long[] BUCKET_BOUNDS_MILLIS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000, 60000};
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_BOUNDS_MILLIS.length + 1);
+    private final AtomicLong totalNanos = new AtomicLong();
+
+
+    LatencyHistogram() {
+    }
+
+
+    void record(long nanos) {
+        final long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_MILLIS.length && millis > BUCKET_BOUNDS_MILLIS[bucket]) {
+            bucket++;
+        }
+        counts.incrementAndGet(bucket);
+        totalNanos.addAndGet(nanos);
+    }
+
+
+    /**
+     * @return count of buckets, including last unbounded one
+     */
+    public int getBucketCount() {
+        return counts.length();
+    }
+
+
+    /**
+     * @param bucket bucket index
+     * @return upper bound of bucket in milliseconds, or {@link Long#MAX_VALUE} for last bucket
+     */
+    public long getBucketBoundMillis(int bucket) {
+        return bucket < BUCKET_BOUNDS_MILLIS.length ? BUCKET_BOUNDS_MILLIS[bucket] : Long.MAX_VALUE;
+    }
+
+
+    /**
+     * @param bucket bucket index
+     * @return count of recorded values in bucket
+     */
+    public long getCount(int bucket) {
+        return counts.get(bucket);
+    }
+
+
+    /**
+     * @return count of all recorded values
+     */
+    public long getTotalCount() {
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+
+    /**
+     * @return sum of all recorded values in nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos.get();
+    }
+}
@@ -0,0 +1,31 @@
+package ru.alexbykov.nopermission;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Executor, which runs commands on main looper
+ */
+final class MainThreadExecutor implements Executor {
+
+
+    private static final MainThreadExecutor INSTANCE = new MainThreadExecutor();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+
+    private MainThreadExecutor() {
+    }
+
+
+    static MainThreadExecutor getInstance() {
+        return INSTANCE;
+    }
+
+
+    @Override
+    public void execute(Runnable command) {
+        handler.post(command);
+    }
+}
@@ -0,0 +1,49 @@
+package ru.alexbykov.nopermission;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+
+/**
+ * Index of permissions, declared in application manifest with uses-permission.
+ * It's built once per process, after that checks are bitwise operations:
+ * <pre>
+ * PermissionSet undeclared = permissions.minus(ManifestPermissionIndex.getDeclaredPermissions(context));
+ * </pre>
+ */
+public final class ManifestPermissionIndex {
+
+
+    private static volatile PermissionSet declaredPermissions;
+
+
+    private ManifestPermissionIndex() {
+    }
+
+
+    /**
+     * @param context any context of application
+     * @return permissions, which are declared in manifest
+     */
+    public static PermissionSet getDeclaredPermissions(Context context) {
+        PermissionSet permissions = declaredPermissions;
+        if (permissions == null) {
+            permissions = loadDeclaredPermissions(context);
+            declaredPermissions = permissions;
+        }
+        return permissions;
+    }
+
+
+    private static PermissionSet loadDeclaredPermissions(Context context) {
+        final PackageInfo packageInfo;
+        try {
+            packageInfo = context.getPackageManager().getPackageInfo(context.getPackageName(), PackageManager.GET_PERMISSIONS);
+        } catch (PackageManager.NameNotFoundException e) {
+            throw new RuntimeException("Can't read permissions from manifest of " + context.getPackageName(), e);
+        }
+        return packageInfo.requestedPermissions == null
+                ? PermissionSet.EMPTY
+                : PermissionSet.of(packageInfo.requestedPermissions);
+    }
+}
@@ -0,0 +1,62 @@
+package ru.alexbykov.nopermission;
+
+import android.support.annotation.ColorRes;
+import android.support.annotation.StringRes;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks method or field, which needs permissions. With annotation processor of module processor
+ * constant {@link PermissionSpec} is generated for it in class "&lt;enclosing class&gt;Permissions":
+ * <pre>
+ * &#64;NeedsPermissions(value = Manifest.permission.CAMERA,
+ *         dialogTitle = R.string.title, dialogMessage = R.string.message, dialogPositiveButton = R.string.ok)
+ * private void openCamera() {
+ *     permissionHelper.check(MainActivityPermissions.OPEN_CAMERA)
+ *             .onSuccess(...)
+ *             .onDenied(...)
+ *             .run();
+ * }
+ * </pre>
+ * Permissions, which are not declared in manifest, fail the build,
+ * if path to manifest is passed to processor with option "noPermission.manifest".
+ * Processor reads only given manifests and doesn't merge manifests of dependencies,
+ * so permission, declared only by dependency, should be declared in your manifest too.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target({ElementType.METHOD, ElementType.FIELD})
+public @interface NeedsPermissions {
+
+
+    /**
+     * @return permissions, which will be asked
+     */
+    String[] value();
+
+
+    /**
+     * @return dialog title string resource, or 0 without dialog before run
+     */
+    @StringRes int dialogTitle() default 0;
+
+
+    /**
+     * @return dialog message string resource, or 0 without dialog before run
+     */
+    @StringRes int dialogMessage() default 0;
+
+
+    /**
+     * @return dialog positive button string resource, or 0 without dialog before run
+     */
+    @StringRes int dialogPositiveButton() default 0;
+
+
+    /**
+     * @return dialog positive button color resource, or 0 for default color
+     */
+    @ColorRes int dialogPositiveButtonColor() default 0;
+}
@@ -0,0 +1,88 @@
+package ru.alexbykov.nopermission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Permissions request, which was started by {@link PermissionHelper#run()} or
+ * {@link PermissionHelper#run(PermissionRequest)} and waits for result.
+ * Listeners are copied at the moment of start, so next configuration of helper doesn't affect it.
+ */
+final class PendingRequest {
+
+
+    /**
+     * Support fragments can use only lower 16 bits of request code
+     */
+    private static final int FIRST_REQUEST_CODE = 98;
+    private static final int LAST_REQUEST_CODE = 0xffff;
+    private static final AtomicInteger nextRequestCode = new AtomicInteger(FIRST_REQUEST_CODE);
+
+    final int requestCode;
+    final String[] permissions;
+    final Runnable successListener;
+    final Runnable deniedListener;
+    final Runnable neverAskAgainListener;
+    final PermissionResultListener resultListener;
+    final PermissionSet checkedPermissions;
+    final PermissionSet knownNeverAskAgain;
+    final RationaleDialogSpec dialogSpec;
+    final boolean unbindAfterResult;
+    final long startNanos;
+    long dialogShownNanos;
+
+
+    /**
+     * @param permissions        permissions, which will be asked
+     * @param knownNeverAskAgain permissions, which are not asked, because history knows their "never ask again" state.
+     *                           They are merged into result
+     * @param template           request with callbacks
+     * @param startNanos         time of run, before permissions were checked
+     */
+    PendingRequest(String[] permissions, PermissionSet knownNeverAskAgain, PermissionRequest template, long startNanos) {
+        this(allocateRequestCode(), permissions, knownNeverAskAgain, template, startNanos);
+    }
+
+
+    /**
+     * This constructor is used to continue request, which was started before host recreation
+     */
+    PendingRequest(int requestCode, String[] permissions, PermissionRequest template, long startNanos) {
+        this(requestCode, permissions, PermissionSet.EMPTY, template, startNanos);
+    }
+
+
+    private PendingRequest(int requestCode,
+                           String[] permissions,
+                           PermissionSet knownNeverAskAgain,
+                           PermissionRequest template,
+                           long startNanos) {
+        this.requestCode = requestCode;
+        this.startNanos = startNanos;
+        this.permissions = permissions;
+        this.knownNeverAskAgain = knownNeverAskAgain;
+        this.successListener = template.successListener;
+        this.deniedListener = template.deniedListener;
+        this.neverAskAgainListener = template.neverAskAgainListener;
+        this.resultListener = template.resultListener;
+        this.checkedPermissions = template.permissions;
+        this.dialogSpec = template.dialogSpec;
+        this.unbindAfterResult = template.unbindAfterResult;
+    }
+
+
+    /**
+     * Request codes are unique for the whole process,
+     * so helpers with the same host never receive results of each other
+     *
+     * @return next free request code
+     */
+    static int allocateRequestCode() {
+        while (true) {
+            final int requestCode = nextRequestCode.get();
+            final int next = requestCode >= LAST_REQUEST_CODE ? FIRST_REQUEST_CODE : requestCode + 1;
+            if (nextRequestCode.compareAndSet(requestCode, next)) {
+                return requestCode;
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package ru.alexbykov.nopermission;
+
+import android.app.Activity;
+import android.content.Context;
+
+/**
+ * Component, through which {@link PermissionHelper} checks and asks permissions.
+ * By default it's activity or fragment, other implementations can be passed to
+ * {@link PermissionHelper#PermissionHelper(PermissionBackend)}, for example {@link SimulatedPermissionBackend}.
+ * <p>
+ * Backend must deliver result of {@link #requestPermissions(String[], int)}
+ * to {@link PermissionHelper#onRequestPermissionsResult(int, String[], int[])},
+ * or return false, if request can't be sent.
+ * Methods are called on thread, where helper is used, usually main thread.
+ */
+public interface PermissionBackend {
+
+
+    /**
+     * @return context, or null if fragment is not attached or backend has no context.
+     * Without context dialog before run and application settings are not available
+     */
+    Context getContext();
+
+
+    /**
+     * @return activity, or null if fragment is not attached or backend has no activity.
+     * Activity is used to observe its lifecycle
+     */
+    Activity getActivity();
+
+
+    /**
+     * @return permissions, declared in manifest, or null if they are unknown and shouldn't be checked
+     */
+    PermissionSet getDeclaredPermissions();
+
+
+    /**
+     * @return true if permissions are asked at runtime (API >=23)
+     */
+    boolean isRuntimePermissions();
+
+
+    /**
+     * @param permission for check
+     * @return true if permission granted
+     * @throws IllegalStateException if host is gone and state can't be read.
+     *                               Unknown state isn't published to other helpers as denied
+     */
+    boolean isGranted(String permission);
+
+
+    /**
+     * @return all granted permissions of application, read with one call,
+     * or null if backend can check permissions only one by one
+     */
+    PermissionSet getGrantedPermissions();
+
+
+    /**
+     * @param permission for check
+     * @return true if rationale should be shown, false if user checked "Never Ask Again"
+     */
+    boolean shouldShowRationale(String permission);
+
+
+    /**
+     * This method show system permissions dialog
+     *
+     * @param permissions permissions, which will be asked
+     * @param requestCode request code, which will be returned to onRequestPermissionsResult
+     * @return true if request is sent, false if host is gone and result will never come,
+     * then request is finished as denied
+     */
+    boolean requestPermissions(String[] permissions, int requestCode);
+}
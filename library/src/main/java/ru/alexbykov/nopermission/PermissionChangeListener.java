@@ -0,0 +1,17 @@
+package ru.alexbykov.nopermission;
+
+/**
+ * Callback of {@link PermissionHelper#observe(PermissionChangeListener, String...)}
+ */
+public interface PermissionChangeListener {
+
+
+    /**
+     * Called on main thread, only if state of at least one observed permission was changed.
+     * Both sets contain only changed permissions
+     *
+     * @param granted permissions, which were granted since previous check
+     * @param revoked permissions, which were revoked since previous check
+     */
+    void onPermissionsChanged(PermissionSet granted, PermissionSet revoked);
+}
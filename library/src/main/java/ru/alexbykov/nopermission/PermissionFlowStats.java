@@ -0,0 +1,53 @@
+package ru.alexbykov.nopermission;
+
+/**
+ * Statistics of permission flows for one permission
+ */
+public final class PermissionFlowStats {
+
+
+    private final String permission;
+    private final LatencyHistogram requestLatency = new LatencyHistogram();
+    private final LatencyHistogram dialogDuration = new LatencyHistogram();
+    private final LatencyHistogram[] resultLatency = {new LatencyHistogram(), new LatencyHistogram(), new LatencyHistogram()};
+
+
+    PermissionFlowStats(String permission) {
+        this.permission = permission;
+    }
+
+
+    /**
+     * @return permission of these statistics
+     */
+    public String getPermission() {
+        return permission;
+    }
+
+
+    /**
+     * @return time from {@link PermissionHelper#run()} to system permissions request
+     */
+    public LatencyHistogram getRequestLatency() {
+        return requestLatency;
+    }
+
+
+    /**
+     * @return time, while dialog from {@link PermissionHelper#withDialogBeforeRun(int, int, int)} was on screen
+     */
+    public LatencyHistogram getDialogDuration() {
+        return dialogDuration;
+    }
+
+
+    /**
+     * Count of histogram is count of flows with this outcome
+     *
+     * @param outcome one of PermissionMetrics.OUTCOME constants
+     * @return time from {@link PermissionHelper#run()} to result with this outcome
+     */
+    public LatencyHistogram getResultLatency(int outcome) {
+        return resultLatency[outcome];
+    }
+}
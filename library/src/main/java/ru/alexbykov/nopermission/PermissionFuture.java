@@ -0,0 +1,104 @@
+package ru.alexbykov.nopermission;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of {@link PermissionHelper#run(PermissionPipeline)}, which will be known after user answers.
+ * Futures can be chained, next pipeline is run only if all permissions of previous one are granted:
+ * <pre>
+ * permissionHelper.run(LOCATION_PIPELINE)
+ *         .then(CAMERA_PIPELINE)
+ *         .addListener(...);
+ * </pre>
+ * Future is not thread safe, use it on the same thread as helper.
+ */
+public final class PermissionFuture {
+
+
+    private final PermissionHelper helper;
+    private PermissionResult result;
+    private List<PermissionResultListener> listeners;
+
+
+    PermissionFuture(PermissionHelper helper) {
+        this.helper = helper;
+    }
+
+
+    /**
+     * @return true if result is known
+     */
+    public boolean isDone() {
+        return result != null;
+    }
+
+
+    /**
+     * @return result of all stages, or null if it's not known yet
+     */
+    public PermissionResult getResult() {
+        return result;
+    }
+
+
+    /**
+     * @param listener called with result, right now, if result is already known
+     * @return current object
+     */
+    public PermissionFuture addListener(PermissionResultListener listener) {
+        if (result != null) {
+            listener.onResult(result);
+        } else {
+            if (listeners == null) {
+                listeners = new ArrayList<>();
+            }
+            listeners.add(listener);
+        }
+        return this;
+    }
+
+
+    /**
+     * This method run next pipeline by the same helper, after all permissions of this one are granted.
+     * Otherwise chained future completes with result of this one
+     *
+     * @param pipeline next pipeline
+     * @return future with result of both pipelines
+     */
+    public PermissionFuture then(final PermissionPipeline pipeline) {
+        final PermissionFuture chained = new PermissionFuture(helper);
+        addListener(new PermissionResultListener() {
+            @Override
+            public void onResult(final PermissionResult previous) {
+                if (!previous.isAllGranted()) {
+                    chained.complete(previous);
+                    return;
+                }
+                helper.run(pipeline).addListener(new PermissionResultListener() {
+                    @Override
+                    public void onResult(PermissionResult next) {
+                        chained.complete(new PermissionResult(previous.getGranted().union(next.getGranted()),
+                                next.getDenied(), next.getNeverAskAgain()));
+                    }
+                });
+            }
+        });
+        return chained;
+    }
+
+
+    /**
+     * @param result result of all stages
+     */
+    void complete(PermissionResult result) {
+        this.result = result;
+        if (listeners != null) {
+            final List<PermissionResultListener> completedListeners = listeners;
+            listeners = null;
+            for (PermissionResultListener listener : completedListeners) {
+                listener.onResult(result);
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package ru.alexbykov.nopermission;
+
+import android.os.Build;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Table of dangerous permissions groups for API level, on which application runs.
+ * <p>
+ * API 23-25: permissions of one group are granted together, checkSelfPermission returns the same result for them.
+ * API 23-28: user answers once for the whole group, so rationale is the same for all its permissions.
+ * API 29+: groups are not guaranteed anymore, each permission is handled separately.
+ * <p>
+ * Table only skips checks, which result is already known. Requested permissions are not reduced
+ * to one per group: system shows one dialog per group anyway, and result must contain every asked permission.
+ */
+final class PermissionGroups {
+
+
+    private static final String[] CALENDAR = {
+            "android.permission.READ_CALENDAR",
+            "android.permission.WRITE_CALENDAR"};
+    private static final String[] CONTACTS = {
+            "android.permission.READ_CONTACTS",
+            "android.permission.WRITE_CONTACTS",
+            "android.permission.GET_ACCOUNTS"};
+    private static final String[] LOCATION = {
+            "android.permission.ACCESS_FINE_LOCATION",
+            "android.permission.ACCESS_COARSE_LOCATION"};
+    private static final String[] PHONE = {
+            "android.permission.READ_PHONE_STATE",
+            "android.permission.CALL_PHONE",
+            "android.permission.ADD_VOICEMAIL",
+            "android.permission.USE_SIP"};
+    private static final String[] PHONE_O = {
+            "android.permission.READ_PHONE_NUMBERS",
+            "android.permission.ANSWER_PHONE_CALLS"};
+    private static final String[] CALL_LOG = {
+            "android.permission.READ_CALL_LOG",
+            "android.permission.WRITE_CALL_LOG",
+            "android.permission.PROCESS_OUTGOING_CALLS"};
+    private static final String[] SMS = {
+            "android.permission.SEND_SMS",
+            "android.permission.RECEIVE_SMS",
+            "android.permission.READ_SMS",
+            "android.permission.RECEIVE_WAP_PUSH",
+            "android.permission.RECEIVE_MMS"};
+    private static final String[] STORAGE = {
+            "android.permission.READ_EXTERNAL_STORAGE",
+            "android.permission.WRITE_EXTERNAL_STORAGE"};
+    private static final int API_O = 26;
+    private static final int API_P = 28;
+    private static final int API_Q = 29;
+    private static final PermissionGroups NO_GROUPS = new PermissionGroups(new HashMap<String, PermissionSet>(), false);
+    private static volatile PermissionGroups current;
+    private final Map<String, PermissionSet> groups;
+    private final boolean grantedTogether;
+
+
+    private PermissionGroups(Map<String, PermissionSet> groups, boolean grantedTogether) {
+        this.groups = groups;
+        this.grantedTogether = grantedTogether;
+    }
+
+
+    /**
+     * @return groups of current device
+     */
+    static PermissionGroups getInstance() {
+        PermissionGroups groups = current;
+        if (groups == null) {
+            groups = forApiLevel(Build.VERSION.SDK_INT);
+            current = groups;
+        }
+        return groups;
+    }
+
+
+    /**
+     * @param apiLevel API level of device
+     * @return groups, which behave as one permission on given API level
+     */
+    static PermissionGroups forApiLevel(int apiLevel) {
+        if (apiLevel < Build.VERSION_CODES.M || apiLevel >= API_Q) {
+            return NO_GROUPS;
+        }
+        final Map<String, PermissionSet> groups = new HashMap<>();
+        put(groups, CALENDAR);
+        put(groups, CONTACTS);
+        put(groups, LOCATION);
+        put(groups, SMS);
+        put(groups, STORAGE);
+        if (apiLevel < API_O) {
+            put(groups, PHONE, CALL_LOG);
+        } else if (apiLevel < API_P) {
+            put(groups, PHONE, PHONE_O, CALL_LOG);
+        } else {
+            put(groups, PHONE, PHONE_O);
+            put(groups, CALL_LOG);
+        }
+        return new PermissionGroups(groups, apiLevel < API_O);
+    }
+
+
+    private static void put(Map<String, PermissionSet> groups, String[]... members) {
+        PermissionSet group = PermissionSet.EMPTY;
+        for (String[] permissions : members) {
+            group = group.union(PermissionSet.of(permissions));
+        }
+        for (String[] permissions : members) {
+            for (String permission : permissions) {
+                groups.put(permission, group);
+            }
+        }
+    }
+
+
+    /**
+     * @param permission permission for check
+     * @return permissions, which have the same rationale, including permission itself,
+     * or empty set, if permission is not in group
+     */
+    PermissionSet getRationaleGroup(String permission) {
+        final PermissionSet group = groups.get(permission);
+        return group == null ? PermissionSet.EMPTY : group;
+    }
+
+
+    /**
+     * @param permission granted permission
+     * @return permissions, which are granted together with it, or empty set,
+     * if API level grants each permission separately
+     */
+    PermissionSet getGrantedTogether(String permission) {
+        return grantedTogether ? getRationaleGroup(permission) : PermissionSet.EMPTY;
+    }
+}
@@ -13,12 +13,14 @@ import android.provider.Settings;
 import android.support.annotation.ColorRes;
 import android.support.annotation.RequiresApi;
 import android.support.annotation.StringRes;
-import android.support.v4.app.ActivityCompat;
 import android.support.v4.app.Fragment;
+import android.support.v4.app.FragmentActivity;
 import android.support.v4.content.ContextCompat;
+import android.support.v4.util.SparseArrayCompat;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * Date: 30.07.2017
@@ -32,17 +34,29 @@ import java.util.List;
 public class PermissionHelper {
 
 
-    private static final int PERMISSION_REQUEST_CODE = 98;
-    private Activity activity;
-    private Fragment fragment;
-    private String[] permissions;
+    private static final int BULK_CHECK_MIN_PERMISSIONS = 4;
+    private final PermissionBackend backend;
+    private PermissionSet checkedPermissions = PermissionSet.EMPTY;
     private Runnable successListener;
     private Runnable deniedListener;
     private Runnable neverAskAgainListener;
-    private AlertDialog.Builder dialogBeforeRunBuilder;
-    private int dialogBeforeAskPositiveButton;
-    private int dialogBeforeAskPositiveButtonColor = DIALOG_WITHOUT_CUSTOM_COLOR;
-    private final static int DIALOG_WITHOUT_CUSTOM_COLOR = 0;
+    private PermissionResultListener resultListener;
+    private RationaleDialogSpec dialogBeforeRunSpec;
+    private int dialogBeforeAskPositiveButtonColor = RationaleDialogSpec.WITHOUT_CUSTOM_COLOR;
+    private AlertDialog dialogBeforeRun;
+    private RationaleDialogSpec dialogBeforeRunShownSpec;
+    private Context dialogBeforeRunContext;
+    private PendingRequest dialogBeforeRunRequest;
+    private PermissionRequest configuredRequest;
+    private final PermissionStateRegistry registry;
+    private HostLifecycleObserver hostLifecycleObserver;
+    private final SparseArrayCompat<PendingRequest> pendingRequests = new SparseArrayCompat<>();
+    private PermissionRequestScheduler requestScheduler;
+    private PermissionResultFragment resultFragment;
+    private PermissionMetrics metrics;
+    private PermissionHistory history;
+    private PermissionGroups groups = PermissionGroups.getInstance();
+    private final List<PermissionObservation> observations = new ArrayList<>();
 
 
     /**
@@ -51,7 +65,7 @@ public class PermissionHelper {
      * @param activity is activity instance. Use it only in activities. Don't use in fragments!
      */
     public PermissionHelper(Activity activity) {
-        this.activity = activity;
+        this(new ActivityPermissionBackend(activity), PermissionStateRegistry.getInstance());
     }
 
 
@@ -61,7 +75,71 @@ public class PermissionHelper {
      * @param fragment is fragment instance. Use it only in fragments
      */
     public PermissionHelper(Fragment fragment) {
-        this.fragment = fragment;
+        this(new FragmentPermissionBackend(fragment), PermissionStateRegistry.getInstance());
+    }
+
+
+    /**
+     * Constructor for custom backend, for example {@link SimulatedPermissionBackend} in JVM tests
+     *
+     * @param backend component, through which permissions are checked and asked
+     */
+    public PermissionHelper(PermissionBackend backend) {
+        this(backend, PermissionStateRegistry.forBackend(backend));
+    }
+
+
+    /**
+     * @param backend  component, through which permissions are checked and asked
+     * @param registry permissions state, shared with other helpers of the same backend
+     */
+    private PermissionHelper(PermissionBackend backend, PermissionStateRegistry registry) {
+        this.backend = backend;
+        this.registry = registry;
+    }
+
+
+    /**
+     * This method create helper, which doesn't need onRequestPermissionsResult forwarding.
+     * Headless fragment will be attached to activity, it receives results
+     * and keeps pending request across configuration changes and process death.
+     * Call it in onCreate. Note, your activity should call super.onRequestPermissionsResult, if overrides it
+     *
+     * @param activity is activity instance. Use it only in activities
+     * @return helper, bound to headless fragment
+     * @see #hasPendingRequest()
+     */
+    public static PermissionHelper attach(FragmentActivity activity) {
+        return attach(PermissionResultFragment.attach(activity.getSupportFragmentManager()));
+    }
+
+
+    /**
+     * Same as {@link #attach(FragmentActivity)}, but headless fragment will be attached to child fragment manager
+     *
+     * @param fragment is fragment instance. Use it only in fragments
+     * @return helper, bound to headless fragment
+     */
+    public static PermissionHelper attach(Fragment fragment) {
+        return attach(PermissionResultFragment.attach(fragment.getChildFragmentManager()));
+    }
+
+
+    private static PermissionHelper attach(PermissionResultFragment resultFragment) {
+        return new PermissionHelper(resultFragment).bindResultFragment(resultFragment);
+    }
+
+
+    /**
+     * This method bind helper to headless fragment, which receives results and keeps pending request for it
+     *
+     * @param resultFragment headless fragment of host
+     * @return current object
+     */
+    PermissionHelper bindResultFragment(PermissionResultFragment resultFragment) {
+        this.resultFragment = resultFragment;
+        resultFragment.bind(this);
+        return this;
     }
 
 
@@ -70,8 +148,8 @@ public class PermissionHelper {
      * @return current object
      */
     public PermissionHelper check(String permission) {
-        this.permissions = new String[1];
-        this.permissions[0] = permission;
+        this.checkedPermissions = PermissionSet.of(permission);
+        configuredRequest = null;
         return this;
     }
 
@@ -81,7 +159,24 @@ public class PermissionHelper {
      * @return current object
      */
     public PermissionHelper check(String... permissions) {
-        this.permissions = permissions;
+        this.checkedPermissions = PermissionSet.ordered(permissions);
+        configuredRequest = null;
+        return this;
+    }
+
+
+    /**
+     * This method setup permissions and dialog before run, which are prepared once,
+     * for example generated from {@link NeedsPermissions}. Dialog settings of helper are replaced
+     *
+     * @param spec prepared permissions
+     * @return current object
+     */
+    public PermissionHelper check(PermissionSpec spec) {
+        this.checkedPermissions = spec.permissions;
+        this.dialogBeforeRunSpec = spec.dialogSpec;
+        this.dialogBeforeAskPositiveButtonColor = spec.getDialogPositiveButtonColor();
+        configuredRequest = null;
         return this;
     }
 
@@ -94,6 +189,7 @@ public class PermissionHelper {
      */
     public PermissionHelper onSuccess(Runnable listener) {
         this.successListener = listener;
+        configuredRequest = null;
         return this;
     }
 
@@ -105,6 +201,7 @@ public class PermissionHelper {
      */
     public PermissionHelper onDenied(Runnable listener) {
         this.deniedListener = listener;
+        configuredRequest = null;
         return this;
     }
 
@@ -114,6 +211,7 @@ public class PermissionHelper {
     @Deprecated
     public PermissionHelper onFailure(Runnable listener) {
         this.deniedListener = listener;
+        configuredRequest = null;
         return this;
     }
 
@@ -125,6 +223,22 @@ public class PermissionHelper {
      */
     public PermissionHelper onNeverAskAgain(Runnable listener) {
         this.neverAskAgainListener = listener;
+        configuredRequest = null;
+        return this;
+    }
+
+
+    /**
+     * This method setup callback with state of each checked permission.
+     * It's called after success, denied or never ask again callback,
+     * and can be used instead of onSuccess and onDenied
+     *
+     * @param listener called with granted, denied and never ask again permissions
+     * @return current object
+     */
+    public PermissionHelper onResult(PermissionResultListener listener) {
+        this.resultListener = listener;
+        configuredRequest = null;
         return this;
     }
 
@@ -132,6 +246,8 @@ public class PermissionHelper {
     /**
      * This method setup custom dialog before permissions will be asked.
      * Dialog will be shown only if permissions not granted.
+     * Only resources are remembered here, dialog is created when it should be shown,
+     * and is reused next time with the same resources
      *
      * @param titleRes          dialog title string resource
      * @param messageRes        dialog message string resource
@@ -143,48 +259,188 @@ public class PermissionHelper {
                                                 @StringRes int messageRes,
                                                 @StringRes int positiveButtonRes) {
 
-        this.dialogBeforeAskPositiveButton = positiveButtonRes;
-        dialogBeforeRunBuilder = getDialogBuilder(titleRes, messageRes);
+        this.dialogBeforeRunSpec = new RationaleDialogSpec(titleRes, messageRes, positiveButtonRes,
+                RationaleDialogSpec.WITHOUT_CUSTOM_COLOR);
+        configuredRequest = null;
         return this;
     }
 
 
     /**
-     * This method setup custom dialog positive button color
+     * This method setup custom dialog positive button color.
+     * Color will be resolved when dialog is shown
      *
      * @param colorRes dialog positive button string resource
      * @return current object
      */
     public PermissionHelper setDialogPositiveButtonColor(@ColorRes int colorRes) {
-        this.dialogBeforeAskPositiveButtonColor = ContextCompat.getColor(getContext(), colorRes);
+        this.dialogBeforeAskPositiveButtonColor = colorRes;
+        configuredRequest = null;
         return this;
     }
 
 
+    /**
+     * This method setup scheduler, which merges requests of several helpers into one system dialog.
+     * Unlike other settings, scheduler stays after permissions request.
+     *
+     * @param scheduler scheduler shared by helpers of one screen, or null to ask permissions directly
+     * @return current object
+     */
+    public PermissionHelper setRequestScheduler(PermissionRequestScheduler scheduler) {
+        this.requestScheduler = scheduler;
+        return this;
+    }
+
+
+    /**
+     * This method setup metrics, which record duration and outcome of permission flows.
+     * Unlike other settings, metrics stay after permissions request.
+     *
+     * @param metrics metrics shared by helpers, or null to disable recording
+     * @return current object
+     */
+    public PermissionHelper setMetrics(PermissionMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+
+    /**
+     * This method setup history of permissions requests. With history permissions, which are known
+     * as "never ask again", are reported to onNeverAskAgain callback without system dialog,
+     * and dialog before run is shown for permissions, which were never asked.
+     * Unlike other settings, history stays after permissions request.
+     *
+     * @param history history of application, or null to rely only on system
+     * @return current object
+     */
+    public PermissionHelper setHistory(PermissionHistory history) {
+        this.history = history;
+        return this;
+    }
+
+
+    /**
+     * This method replace groups of current device, it's used in tests
+     *
+     * @param groups groups for some API level
+     */
+    void setPermissionGroups(PermissionGroups groups) {
+        this.groups = groups;
+    }
+
+
     /**
      * This method return dialog builder with default settings.
      * It is created for the future customization
      *
+     * @param context    context of host
      * @param titleRes   dialog title string resource
      * @param messageRes dialog message string resource
      * @return new dialog builder object
      */
-    private AlertDialog.Builder getDialogBuilder(@StringRes int titleRes, @StringRes int messageRes) {
-        final Context context = getContext();
-        AlertDialog.Builder dialogBuilder = new AlertDialog.Builder(getContext());
+    private AlertDialog.Builder getDialogBuilder(Context context, @StringRes int titleRes, @StringRes int messageRes) {
+        AlertDialog.Builder dialogBuilder = new AlertDialog.Builder(context);
         dialogBuilder.setTitle(context.getString(titleRes));
         dialogBuilder.setMessage(context.getString(messageRes));
         dialogBuilder.setCancelable(false);
         return dialogBuilder;
     }
 
+
+    /**
+     * This method return dialog, which was shown last time, if resources and host are the same,
+     * otherwise create new one
+     *
+     * @param spec dialog resources
+     * @return dialog before run
+     */
+    private AlertDialog getDialogBeforeRun(RationaleDialogSpec spec) {
+        final Context context = getContext();
+        if (dialogBeforeRun == null || context != dialogBeforeRunContext || !spec.equals(dialogBeforeRunShownSpec)) {
+            dialogBeforeRun = createDialogBeforeRun(context, spec, new DialogInterface.OnClickListener() {
+                @Override
+                public void onClick(DialogInterface dialogInterface, int i) {
+                    onDialogBeforeRunPositiveClick();
+                }
+            });
+            dialogBeforeRunShownSpec = spec;
+            dialogBeforeRunContext = context;
+        }
+        return dialogBeforeRun;
+    }
+
+
+    /**
+     * This method create dialog before run. Dialog can't be created in JVM tests, so they replace it
+     *
+     * @param context          context of host
+     * @param spec             dialog resources
+     * @param positiveListener listener of positive button, which asks permissions
+     * @return new dialog
+     */
+    AlertDialog createDialogBeforeRun(Context context, RationaleDialogSpec spec,
+                                      DialogInterface.OnClickListener positiveListener) {
+        return getDialogBuilder(context, spec.titleRes, spec.messageRes)
+                .setPositiveButton(spec.positiveButtonRes, positiveListener)
+                .create();
+    }
+
+
+    /**
+     * This method ask permissions of request, for which dialog was shown
+     */
+    private void onDialogBeforeRunPositiveClick() {
+        final PendingRequest request = dialogBeforeRunRequest;
+        dialogBeforeRunRequest = null;
+        if (request == null) {
+            return;
+        }
+        if (metrics != null) {
+            metrics.recordDialog(request.permissions, System.nanoTime() - request.dialogShownNanos);
+        }
+        askPermissions(request);
+    }
+
+
+    /**
+     * This method forget created dialog, it's called when host destroyed
+     */
+    private void releaseDialogBeforeRun() {
+        dialogBeforeRun = null;
+        dialogBeforeRunShownSpec = null;
+        dialogBeforeRunContext = null;
+        dialogBeforeRunRequest = null;
+    }
+
     /**
      * This method return context, depending on what you use: activity or fragment
      *
      * @return context
      */
     private Context getContext() {
-        return activity == null ? fragment.getContext() : activity;
+        return backend.getContext();
+    }
+
+
+    /**
+     * This method return activity, which hosts this helper
+     *
+     * @return activity or null, if fragment is not attached
+     */
+    Activity getHostActivity() {
+        return backend.getActivity();
+    }
+
+
+    /**
+     * This method return fragment, which hosts this helper
+     *
+     * @return fragment or null, if helper is created in activity or with custom backend
+     */
+    private Fragment getHostFragment() {
+        return backend instanceof FragmentPermissionBackend ? ((FragmentPermissionBackend) backend).getFragment() : null;
     }
 
 
@@ -192,25 +448,229 @@ public class PermissionHelper {
      * This method check API-version and listeners
      *
      * @throws RuntimeException if isListenersCorrect return false
+     *                          or if one of permissions is not declared in manifest
      */
     public void run() {
         if (isListenersCorrect()) {
-            runSuccessOrAskPermissions();
+            run(getConfiguredRequest());
+        } else {
+            throw new RuntimeException("permissionSuccessListener or permissionDeniedListener have null reference. You must realize onSuccess and onDenied methods or onResult method");
+        }
+    }
+
+
+    /**
+     * This method run request, which is configured once with {@link PermissionRequest.Builder}.
+     * Configuration of helper is not used and not cleared,
+     * so the same request can be run again and again by any helper
+     *
+     * @param request immutable request
+     * @throws RuntimeException if one of permissions is not declared in manifest
+     */
+    public void run(PermissionRequest request) {
+        final long startNanos = System.nanoTime();
+        checkDeclaredPermissions(request.permissions);
+        observeHostLifecycle();
+        if (isPendingRequestRestored(request.permissions)) {
+            resumePendingRequest(request, startNanos);
         } else {
-            throw new RuntimeException("permissionSuccessListener or permissionDeniedListener have null reference. You must realize onSuccess and onDenied methods");
+            runSuccessOrAskPermissions(request, startNanos);
+        }
+    }
+
+
+    /**
+     * This method run stages of pipeline one after another, instead of nested run calls in onSuccess.
+     * State of all permissions is resolved once, so granted stages are skipped without asking system again
+     *
+     * @param pipeline immutable pipeline
+     * @return future with result of all stages
+     * @throws RuntimeException if one of permissions is not declared in manifest
+     */
+    public PermissionFuture run(PermissionPipeline pipeline) {
+        checkDeclaredPermissions(pipeline.permissions);
+        final PermissionFuture future = new PermissionFuture(this);
+        getGrantedPermissions(pipeline.permissions);
+        runStage(pipeline, 0, PermissionSet.EMPTY, future);
+        return future;
+    }
+
+
+    /**
+     * @param pipeline pipeline, which is run
+     * @param stage    index of stage
+     * @param granted  permissions of previous stages
+     * @param future   future of pipeline
+     */
+    private void runStage(final PermissionPipeline pipeline,
+                          final int stage,
+                          final PermissionSet granted,
+                          final PermissionFuture future) {
+        if (stage == pipeline.stages.length) {
+            future.complete(new PermissionResult(granted, PermissionSet.EMPTY, PermissionSet.EMPTY));
+            return;
+        }
+        run(new PermissionRequest(pipeline.stages[stage], null, null, null, new PermissionResultListener() {
+            @Override
+            public void onResult(PermissionResult result) {
+                if (result.isAllGranted()) {
+                    runStage(pipeline, stage + 1, granted.union(result.getGranted()), future);
+                } else {
+                    future.complete(pipeline.getStoppedResult(stage, granted, result, getGrantedPermissions(pipeline.permissions)));
+                }
+            }
+        }, pipeline.dialogSpecs[stage], false));
+    }
+
+
+    /**
+     * This method return request with current configuration of helper.
+     * It's created once and reused until configuration will be changed
+     *
+     * @return request, which should be cleared after result
+     */
+    private PermissionRequest getConfiguredRequest() {
+        if (configuredRequest == null) {
+            configuredRequest = new PermissionRequest(checkedPermissions, successListener, deniedListener,
+                    neverAskAgainListener, resultListener, getDialogBeforeRunSpec(), true);
+        }
+        return configuredRequest;
+    }
+
+
+    /**
+     * This method fail fast, if permissions are not declared in manifest,
+     * otherwise system would deny them silently after full request
+     *
+     * @param permissions permissions of request
+     * @throws RuntimeException with list of undeclared permissions
+     */
+    private void checkDeclaredPermissions(PermissionSet permissions) {
+        final PermissionSet declaredPermissions = backend.getDeclaredPermissions();
+        if (declaredPermissions == null) {
+            return;
+        }
+        final PermissionSet undeclaredPermissions = permissions.minus(declaredPermissions);
+        if (!undeclaredPermissions.isEmpty()) {
+            throw new RuntimeException("Permissions " + undeclaredPermissions + " are not declared in AndroidManifest.xml. You must add uses-permission for each of them");
+        }
+    }
+
+
+    /**
+     * This method check, whether request was started before host recreation and isn't finished.
+     * Use it only with {@link #attach(FragmentActivity)}.
+     * If it returns true, setup callbacks and call {@link #run()} with the same permissions,
+     * request will be continued without new dialogs
+     *
+     * @return true if request, started by previous host instance, is pending
+     */
+    public boolean hasPendingRequest() {
+        return resultFragment != null && resultFragment.getStage() != PermissionResultFragment.STAGE_NONE;
+    }
+
+
+    /**
+     * @param permissions permissions of request
+     * @return true if pending request is restored after host recreation and belongs to given permissions
+     */
+    private boolean isPendingRequestRestored(PermissionSet permissions) {
+        if (!hasPendingRequest() || pendingRequests.get(resultFragment.getRequestCode()) != null) {
+            return false;
+        }
+        return permissions.containsAll(PermissionSet.of(resultFragment.getPermissions()));
+    }
+
+
+    /**
+     * This method continue request, which was started before host recreation, with current callbacks.
+     * Dialog is shown again only if host was recreated while it was on screen,
+     * system dialog is not asked again
+     *
+     * @param template   request with callbacks
+     * @param startNanos time of run
+     */
+    private void resumePendingRequest(PermissionRequest template, long startNanos) {
+        final PendingRequest request = new PendingRequest(resultFragment.getRequestCode(), resultFragment.getPermissions(),
+                template, startNanos);
+        pendingRequests.put(request.requestCode, request);
+        switch (resultFragment.getStage()) {
+            case PermissionResultFragment.STAGE_DIALOG:
+                checkDialogAndAskPermissions(request);
+                break;
+            case PermissionResultFragment.STAGE_RESULT:
+                dispatchResult(request, resultFragment.getPermissions(), resultFragment.getGrantResults());
+                break;
+            default:
+                break;
+        }
+    }
+
+
+    /**
+     * This method start observing host lifecycle once, to invalidate permissions cache
+     * when host comes back to foreground, and to release helper, when host activity or fragment is destroyed.
+     * If host is not attached yet, it will be tried on next run
+     */
+    private void observeHostLifecycle() {
+        if (hostLifecycleObserver != null) {
+            return;
+        }
+        final Activity hostActivity = getHostActivity();
+        if (hostActivity == null) {
+            return;
+        }
+        hostLifecycleObserver = HostLifecycleObserver.observe(hostActivity, getHostFragment(), new HostLifecycleObserver.Listener() {
+            @Override
+            public void onHostReturned() {
+                invalidateCache();
+                notifyObservations();
+            }
+
+            @Override
+            public void onHostDestroyed() {
+                hostLifecycleObserver = null;
+                PermissionHelper.this.onHostDestroyed();
+            }
+        });
+    }
+
+
+    /**
+     * This method release everything, what can reference destroyed host: callbacks, requests,
+     * dialog and observations. Request, started with {@link #attach(FragmentActivity)},
+     * is kept by headless fragment and continued by helper of new host instance
+     */
+    void onHostDestroyed() {
+        pendingRequests.clear();
+        observations.clear();
+        if (requestScheduler != null) {
+            requestScheduler.release(this);
         }
+        if (resultFragment != null) {
+            resultFragment.unbind(this);
+        }
+        if (dialogBeforeRun != null && dialogBeforeRun.isShowing()) {
+            dialogBeforeRun.dismiss();
+        }
+        releaseDialogBeforeRun();
+        unbind();
     }
 
 
     /**
      * This method run successListener if all permissions granted,
-     * and run method c{@link #checkPermissions()}, if {@link #isNeedToAskPermissions()} return false
+     * and run method c{@link #checkPermissions(PermissionRequest)}, if {@link #isNeedToAskPermissions()} return false.
+     * When all permissions are already known as granted, nothing is allocated and system is not asked
+     *
+     * @param template   request with permissions and callbacks
+     * @param startNanos time of run, metrics measure latency from it
      */
-    private void runSuccessOrAskPermissions() {
-        if (isNeedToAskPermissions()) {
-            checkPermissions();
+    private void runSuccessOrAskPermissions(PermissionRequest template, long startNanos) {
+        if (!isNeedToAskPermissions() || registry.getGrantedPermissions().containsAll(template.permissions)) {
+            runSuccess(template, startNanos);
         } else {
-            successListener.run();
+            checkPermissions(template, startNanos);
         }
     }
 
@@ -218,82 +678,262 @@ public class PermissionHelper {
     /**
      * This method request only those permissions that are not granted.
      * If all are granted, success callback called
-     * otherwise {@link #checkDialogAndAskPermissions(String[])} will called
+     * otherwise {@link #checkDialogAndAskPermissions(PendingRequest)} will called
+     *
+     * @param template   request with permissions and callbacks
+     * @param startNanos time of run
      */
     @RequiresApi(api = Build.VERSION_CODES.M)
-    private void checkPermissions() {
-        final String[] permissionsForRequest = getPermissionsForRequest();
-        if (permissionsForRequest.length > 0) {
-            checkDialogAndAskPermissions(permissionsForRequest);
+    private void checkPermissions(PermissionRequest template, long startNanos) {
+        final String[] permissionsForRequest = getPermissionsForRequest(template.permissions);
+        if (permissionsForRequest.length == 0) {
+            runSuccess(template, startNanos);
+            return;
+        }
+        final PermissionSet knownNeverAskAgain = getKnownNeverAskAgain(permissionsForRequest, template);
+        if (knownNeverAskAgain.isEmpty()) {
+            checkDialogAndAskPermissions(startRequest(permissionsForRequest, knownNeverAskAgain, template, startNanos));
+        } else if (knownNeverAskAgain.size() == permissionsForRequest.length) {
+            runKnownNeverAskAgain(permissionsForRequest, template, startNanos);
         } else {
-            successListener.run();
+            final String[] askedPermissions = PermissionSet.ordered(permissionsForRequest).toArrayWithout(knownNeverAskAgain);
+            checkDialogAndAskPermissions(startRequest(askedPermissions, knownNeverAskAgain, template, startNanos));
+        }
+    }
+
+
+    /**
+     * This method run success callbacks, when all permissions are already granted.
+     * Result is precomputed by request, so nothing is allocated
+     *
+     * @param template   request with callbacks
+     * @param startNanos time of run
+     */
+    private void runSuccess(PermissionRequest template, long startNanos) {
+        if (metrics != null) {
+            metrics.recordResult(template.orderedPermissions, PermissionMetrics.OUTCOME_SUCCESS, System.nanoTime() - startNanos);
+        }
+        if (template.successListener != null) {
+            template.successListener.run();
+        }
+        if (template.resultListener != null) {
+            template.resultListener.onResult(template.allGrantedResult);
+        }
+    }
+
+
+    /**
+     * This method run never ask again callbacks without system dialog, when all not granted permissions
+     * are known as "never ask again"
+     *
+     * @param permissionsForRequest = permissions, when currently not granted
+     * @param template              request with callbacks
+     * @param startNanos            time of run
+     */
+    private void runKnownNeverAskAgain(String[] permissionsForRequest, PermissionRequest template, long startNanos) {
+        if (metrics != null) {
+            metrics.recordResult(permissionsForRequest, PermissionMetrics.OUTCOME_NEVER_ASK_AGAIN, System.nanoTime() - startNanos);
+        }
+        if (template.neverAskAgainListener != null) {
+            template.neverAskAgainListener.run();
+        }
+        if (template.resultListener != null) {
+            final PermissionSet neverAskAgain = PermissionSet.of(permissionsForRequest);
+            template.resultListener.onResult(new PermissionResult(template.permissions.minus(neverAskAgain),
+                    PermissionSet.EMPTY, neverAskAgain));
+        }
+        if (template.unbindAfterResult) {
+            unbind();
+        }
+    }
+
+
+    /**
+     * System dialog isn't shown for permissions in "never ask again" state, so they are not asked again,
+     * if request has onNeverAskAgain or onResult callback. Other permissions are still asked
+     *
+     * @param permissionsForRequest = permissions, when currently not granted and will be asked
+     * @param template              request with callbacks
+     * @return permissions, which history knows in "never ask again" state
+     */
+    private PermissionSet getKnownNeverAskAgain(String[] permissionsForRequest, PermissionRequest template) {
+        PermissionSet knownNeverAskAgain = PermissionSet.EMPTY;
+        if (history == null || (template.neverAskAgainListener == null && template.resultListener == null)) {
+            return knownNeverAskAgain;
+        }
+        for (String permission : permissionsForRequest) {
+            if (history.isNeverAskAgain(permission)) {
+                knownNeverAskAgain = knownNeverAskAgain.union(PermissionSet.of(permission));
+            }
         }
+        return knownNeverAskAgain;
+    }
+
+    /**
+     * @return current dialog resources with positive button color, or null if dialog is not set
+     */
+    private RationaleDialogSpec getDialogBeforeRunSpec() {
+        return dialogBeforeRunSpec == null
+                ? null
+                : dialogBeforeRunSpec.withPositiveButtonColor(dialogBeforeAskPositiveButtonColor);
+    }
+
+
+    /**
+     * This method create request with its own request code and listeners of template,
+     * and store it until result will be received
+     *
+     * @param permissionsForRequest = permissions, when currently not granted and will be asked
+     * @param knownNeverAskAgain    = permissions, when currently not granted and not asked, because of "never ask again"
+     * @param template              request with callbacks
+     * @param startNanos            time of run
+     * @return started request
+     */
+    private PendingRequest startRequest(String[] permissionsForRequest,
+                                        PermissionSet knownNeverAskAgain,
+                                        PermissionRequest template,
+                                        long startNanos) {
+        final PendingRequest request = new PendingRequest(permissionsForRequest, knownNeverAskAgain, template, startNanos);
+        pendingRequests.put(request.requestCode, request);
+        return request;
     }
 
     /**
      * This method check your dialog
      * If you set it, {@link #withDialogBeforeRun}, that dialog will be show before system permission dialog
-     * otherwise {@link #askPermissions(String[])} will be called
+     * otherwise {@link #askPermissions(PendingRequest)} will be called
      * Note, custom dialog will show only if permissions not granted.
      *
-     * @param permissionsForRequest = permissions, when currently not granted and will be asked
+     * @param request = request with permissions, when currently not granted and will be asked
      */
     @SuppressLint("NewApi")
-    private void checkDialogAndAskPermissions(final String[] permissionsForRequest) {
-        if (dialogBeforeRunBuilder != null && isNotContainsNeverAskAgain(permissionsForRequest)) {
-            showDialogBeforeRun(permissionsForRequest);
+    private void checkDialogAndAskPermissions(final PendingRequest request) {
+        if (request.dialogSpec != null && isNotContainsNeverAskAgain(request.permissions)) {
+            showDialogBeforeRun(request);
         } else {
-            askPermissions(permissionsForRequest);
+            askPermissions(request);
         }
     }
 
     /**
      * This method check permissions for never again.
+     * Rationale is the same for permissions of one group, so it's asked once per group
      *
      * @param permissionsForRequest = permissions, when currently not granted and will be asked
      * @return false if one of them never ask gain
      */
     private boolean isNotContainsNeverAskAgain(String[] permissionsForRequest) {
-        for (String permissions : permissionsForRequest) {
-            if (isNeverAskAgain(permissions)) {
-                return false;
+        final boolean traced = PermissionTrace.begin(PermissionTrace.IS_NOT_CONTAINS_NEVER_ASK_AGAIN, permissionsForRequest);
+        try {
+            PermissionSet checkedGroups = PermissionSet.EMPTY;
+            for (String permission : permissionsForRequest) {
+                if (checkedGroups.contains(permission)) {
+                    continue;
+                }
+                if (isNeverAskAgain(permission)) {
+                    return false;
+                }
+                checkedGroups = checkedGroups.union(groups.getRationaleGroup(permission));
             }
+            return true;
+        } finally {
+            PermissionTrace.end(traced);
         }
-        return true;
     }
 
     /**
      * This method set positive button and custom color to your dialog
-     * method {@link #askPermissions(String[])} called when positive button clicked
+     * method {@link #askPermissions(PendingRequest)} called when positive button clicked
      *
-     * @param permissionsForRequest = permissions, when currently not granted and will be asked
+     * @param request = request with permissions, when currently not granted and will be asked
      */
-    private void showDialogBeforeRun(final String[] permissionsForRequest) {
-        dialogBeforeRunBuilder.setPositiveButton(dialogBeforeAskPositiveButton, new DialogInterface.OnClickListener() {
-            @Override
-            public void onClick(DialogInterface dialogInterface, int i) {
-                askPermissions(permissionsForRequest);
+    private void showDialogBeforeRun(final PendingRequest request) {
+        final boolean traced = PermissionTrace.begin(PermissionTrace.SHOW_DIALOG_BEFORE_RUN, request.permissions);
+        try {
+            finishReplacedDialogRequest(request);
+            if (resultFragment != null) {
+                resultFragment.setStage(PermissionResultFragment.STAGE_DIALOG, request.permissions, request.requestCode);
             }
-        });
-        final AlertDialog dialogBeforeRun = dialogBeforeRunBuilder.create();
+            final RationaleDialogSpec spec = request.dialogSpec;
+            final AlertDialog dialog = getDialogBeforeRun(spec);
+            dialogBeforeRunRequest = request;
 
-        dialogBeforeRun.show();
-        if (dialogBeforeAskPositiveButtonColor != DIALOG_WITHOUT_CUSTOM_COLOR) {
-            dialogBeforeRun.getButton(DialogInterface.BUTTON_POSITIVE).setTextColor(dialogBeforeAskPositiveButtonColor);
+            dialog.show();
+            request.dialogShownNanos = System.nanoTime();
+            if (spec.positiveButtonColorRes != RationaleDialogSpec.WITHOUT_CUSTOM_COLOR) {
+                final int color = ContextCompat.getColor(dialog.getContext(), spec.positiveButtonColorRes);
+                dialog.getButton(DialogInterface.BUTTON_POSITIVE).setTextColor(color);
+            }
+        } finally {
+            PermissionTrace.end(traced);
         }
     }
 
     /**
-     * This method ask permission
+     * Helper shows one dialog before run at a time. If dialog of other request is still shown,
+     * that request is finished as denied, like request interrupted by system, so it isn't pending forever
+     *
+     * @param request request, which dialog will be shown
+     */
+    private void finishReplacedDialogRequest(PendingRequest request) {
+        final PendingRequest replacedRequest = dialogBeforeRunRequest;
+        if (replacedRequest == null || replacedRequest.requestCode == request.requestCode) {
+            return;
+        }
+        dialogBeforeRunRequest = null;
+        onRequestPermissionsResult(replacedRequest.requestCode, replacedRequest.permissions, new int[0]);
+    }
+
+    /**
+     * This method ask permission directly or through scheduler, if it's set
+     *
+     * @param request request with array of permissions which you want to ask
+     */
+    private void askPermissions(PendingRequest request) {
+        final boolean traced = PermissionTrace.begin(PermissionTrace.ASK_PERMISSIONS, request.permissions);
+        try {
+            if (requestScheduler != null) {
+                requestScheduler.enqueue(this, request);
+            } else {
+                onPermissionsRequested(request);
+                requestPermissions(request.permissions, request.requestCode);
+            }
+        } finally {
+            PermissionTrace.end(traced);
+        }
+    }
+
+
+    /**
+     * This method is called right before system permissions request, which contains this request
+     *
+     * @param request request, which permissions will be asked
+     */
+    void onPermissionsRequested(PendingRequest request) {
+        if (metrics != null) {
+            metrics.recordRequest(request.permissions, System.nanoTime() - request.startNanos);
+        }
+    }
+
+
+    /**
+     * This method show system permissions dialog. If host is gone, request is finished
+     * with empty result, like request interrupted by system, so it's denied and not pending forever
      *
      * @param permissionsForRequest array of permissions which you want to ask
+     * @param requestCode           request code, which will be returned to onRequestPermissionsResult
      */
-    @SuppressLint("NewApi")
-    private void askPermissions(String[] permissionsForRequest) {
-        if (activity != null) {
-            activity.requestPermissions(permissionsForRequest, PERMISSION_REQUEST_CODE);
+    void requestPermissions(String[] permissionsForRequest, int requestCode) {
+        if (resultFragment != null) {
+            resultFragment.setStage(PermissionResultFragment.STAGE_SYSTEM_REQUEST, permissionsForRequest, requestCode);
+        }
+        if (history != null) {
+            history.recordAsked(permissionsForRequest);
+        }
+        if (!backend.requestPermissions(permissionsForRequest, requestCode)) {
+            onRequestPermissionsResult(requestCode, permissionsForRequest, new int[0]);
         } else {
-            fragment.requestPermissions(permissionsForRequest, PERMISSION_REQUEST_CODE);
+            HostLifecycleObserver.onRequestSent(getHostActivity());
         }
     }
 
@@ -301,10 +941,10 @@ public class PermissionHelper {
     /**
      * This method check listeners for null
      *
-     * @return true if you realized method onSuccess and onDenied
+     * @return true if you realized method onSuccess and onDenied, or onResult
      */
     private boolean isListenersCorrect() {
-        return successListener != null && deniedListener != null;
+        return (successListener != null && deniedListener != null) || resultListener != null;
     }
 
 
@@ -314,97 +954,519 @@ public class PermissionHelper {
      * @return true if API >=23
      */
     private boolean isNeedToAskPermissions() {
-        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.M;
+        return backend.isRuntimePermissions();
     }
 
 
     /**
+     * This method ask system only about permissions, which are not cached yet.
+     * If all checked permissions are granted, nothing is allocated
+     *
+     * @param permissions permissions of request
      * @return Array of permissions, that will be request
      */
-    private String[] getPermissionsForRequest() {
-        List<String> permissionsForRequest = new ArrayList<>();
-        for (String permission : permissions) {
-            if (isPermissionNotGranted(permission)) {
-                permissionsForRequest.add(permission);
+    private String[] getPermissionsForRequest(PermissionSet permissions) {
+        final boolean traced = PermissionTrace.begin(PermissionTrace.GET_PERMISSIONS_FOR_REQUEST, permissions);
+        try {
+            resolvePermissions(permissions);
+            return permissions.toArrayWithout(registry.getGrantedPermissions());
+        } finally {
+            PermissionTrace.end(traced);
+        }
+    }
+
+
+    /**
+     * This method ask system about permissions, which are not known by registry yet.
+     * If API level grants the whole group at once, other permissions of granted one's group are not checked.
+     * Many permissions are read with one system call, if backend supports it
+     *
+     * @param permissions permissions, which state should be known
+     */
+    private void resolvePermissions(PermissionSet permissions) {
+        final PermissionSet unknownPermissions = permissions.minus(registry.getGrantedPermissions()).minus(registry.getDeniedPermissions());
+        if (unknownPermissions.isEmpty()) {
+            return;
+        }
+        if (unknownPermissions.size() >= BULK_CHECK_MIN_PERMISSIONS && readGrantedPermissions(unknownPermissions) != null) {
+            return;
+        }
+        for (String permission : unknownPermissions.toArray()) {
+            if (registry.getGrantedPermissions().contains(permission)) {
+                continue;
+            }
+            final boolean granted = !isPermissionNotGrantedBySystem(permission);
+            if (granted) {
+                if (history != null) {
+                    history.recordGranted(permission);
+                }
+                registry.publish(groups.getGrantedTogether(permission).intersect(unknownPermissions), true);
+            }
+        }
+    }
+
+
+    /**
+     * This method read state of permissions with one system call and publish it to registry
+     *
+     * @param permissions permissions for check
+     * @return granted permissions of given set, or null if backend can't read them at once
+     */
+    private PermissionSet readGrantedPermissions(PermissionSet permissions) {
+        final PermissionSet allGranted = backend.getGrantedPermissions();
+        if (allGranted == null) {
+            return null;
+        }
+        final PermissionSet granted = permissions.intersect(allGranted);
+        registry.publish(granted, true);
+        registry.publish(permissions.minus(granted), false);
+        if (history != null) {
+            for (String permission : granted.toArray()) {
+                history.recordGranted(permission);
             }
         }
-        return permissionsForRequest.toArray(new String[permissionsForRequest.size()]);
+        return granted;
+    }
+
+
+    /**
+     * @param permissions permissions for check
+     * @return granted permissions of given set
+     */
+    private PermissionSet getGrantedPermissions(PermissionSet permissions) {
+        if (!isNeedToAskPermissions()) {
+            return permissions;
+        }
+        resolvePermissions(permissions);
+        return permissions.intersect(registry.getGrantedPermissions());
     }
 
 
     /**
-     * if permission not granted, check neverAskAgain, else call failure
-     * if permission grander, call success
+     * Result is decided from grantResults in one pass, without asking the system again.
+     * If permission not granted, check neverAskAgain for the first denied one, else call failure
+     * if all permissions granted, call success
+     * Empty grantResults means that request was interrupted, it's handled as denied.
+     * Merged request of scheduler is forgotten by headless fragment with its own request code
      *
      * @param grantResults Permissions, which granted
      * @param permissions  Permissions, which you asked
-     * @param requestCode  requestCode of out request
+     * @param requestCode  requestCode of out request. Results of foreign requests are ignored
      */
-    @SuppressLint("NewApi")
     public void onRequestPermissionsResult(int requestCode, String[] permissions, int[] grantResults) {
-        if (requestCode == PERMISSION_REQUEST_CODE) {
-            for (String permission : permissions) {
-                if (isPermissionNotGranted(permission)) {
-                    runDeniedOrNeverAskAgain(permission);
-                    return;
-                }
+        final PendingRequest request = pendingRequests.get(requestCode);
+        if (request != null) {
+            dispatchResult(request, permissions, grantResults);
+        } else if (requestScheduler != null) {
+            if (resultFragment != null) {
+                resultFragment.clear(requestCode);
             }
+            requestScheduler.onRequestPermissionsResult(requestCode, permissions, grantResults);
         }
-        successListener.run();
-        unbind();
     }
 
+
     /**
-     * This method run denied or neverAskAgain callbacks
+     * This method run callbacks of request, which result received
      *
-     * @param permission Permissions, which granted
+     * @param request      request, which was started by this helper
+     * @param permissions  Permissions, which you asked
+     * @param grantResults Permissions, which granted
+     */
+    void dispatchResult(PendingRequest request, String[] permissions, int[] grantResults) {
+        final boolean traced = PermissionTrace.begin(PermissionTrace.DISPATCH_RESULT, permissions);
+        try {
+            pendingRequests.remove(request.requestCode);
+            if (resultFragment != null) {
+                resultFragment.clear(request.requestCode);
+            }
+            final PermissionResult result = getResult(request, permissions, grantResults);
+            final int outcome = result.getOutcome();
+            recordResult(request, permissions, grantResults, outcome);
+            notifyObservations(result);
+            switch (outcome) {
+                case PermissionMetrics.OUTCOME_SUCCESS:
+                    runListener(request.successListener);
+                    break;
+                case PermissionMetrics.OUTCOME_NEVER_ASK_AGAIN:
+                    runListener(request.neverAskAgainListener);
+                    break;
+                default:
+                    runListener(request.deniedListener);
+                    break;
+            }
+            if (request.resultListener != null) {
+                request.resultListener.onResult(result);
+            }
+            if (request.unbindAfterResult) {
+                unbind();
+            }
+        } finally {
+            PermissionTrace.end(traced);
+        }
+    }
+
+
+    /**
+     * This method record result of each permission. Granted permissions are recorded as success,
+     * denied ones with outcome of the whole request
      */
+    private void recordResult(PendingRequest request, String[] permissions, int[] grantResults, int outcome) {
+        if (metrics == null) {
+            return;
+        }
+        final long nanos = System.nanoTime() - request.startNanos;
+        if (!request.knownNeverAskAgain.isEmpty()) {
+            metrics.recordResult(request.knownNeverAskAgain.toArray(), PermissionMetrics.OUTCOME_NEVER_ASK_AGAIN, nanos);
+        }
+        if (grantResults.length == 0) {
+            metrics.recordResult(request.permissions, outcome, nanos);
+            return;
+        }
+        for (int i = 0; i < grantResults.length; i++) {
+            final boolean granted = grantResults[i] == PackageManager.PERMISSION_GRANTED;
+            metrics.recordResult(permissions[i], granted ? PermissionMetrics.OUTCOME_SUCCESS : outcome, nanos);
+        }
+    }
 
-    @SuppressLint("NewApi")
-    private void runDeniedOrNeverAskAgain(String permission) {
-        if (isNeverAskAgain(permission)) {
-            runNeverAskAgain();
-        } else {
-            deniedListener.run();
+
+    /**
+     * This method cache result of each permission and check neverAskAgain for each denied one,
+     * but only once per group, in one pass. Callbacks and metrics are decided by the first denied permission,
+     * so the same answer of user runs the same callback with or without result listener.
+     * Permissions, which were not asked because of known "never ask again", are merged into result and decide callback first
+     *
+     * @param request      request, which result received
+     * @param permissions  Permissions, which you asked
+     * @param grantResults Permissions, which granted
+     * @return state of each checked permission
+     */
+    private PermissionResult getResult(PendingRequest request, String[] permissions, int[] grantResults) {
+        if (grantResults.length == 0) {
+            final PermissionSet denied = PermissionSet.of(request.permissions);
+            return new PermissionResult(request.checkedPermissions.minus(denied).minus(request.knownNeverAskAgain),
+                    denied, request.knownNeverAskAgain, PermissionMetrics.OUTCOME_DENIED);
         }
-        unbind();
+        int outcome = request.knownNeverAskAgain.isEmpty()
+                ? PermissionMetrics.OUTCOME_SUCCESS
+                : PermissionMetrics.OUTCOME_NEVER_ASK_AGAIN;
+        PermissionSet denied = PermissionSet.EMPTY;
+        PermissionSet neverAskAgain = request.knownNeverAskAgain;
+        PermissionSet deniedGroups = PermissionSet.EMPTY;
+        PermissionSet neverAskAgainGroups = PermissionSet.EMPTY;
+        for (int i = 0; i < grantResults.length; i++) {
+            final boolean granted = grantResults[i] == PackageManager.PERMISSION_GRANTED;
+            cacheResult(permissions[i], granted);
+            if (granted) {
+                continue;
+            }
+            final PermissionSet permission = PermissionSet.of(permissions[i]);
+            if (neverAskAgainGroups.containsAll(permission)) {
+                neverAskAgain = neverAskAgain.union(permission);
+            } else if (deniedGroups.containsAll(permission)) {
+                denied = denied.union(permission);
+            } else if (isNeverAskAgainAfterRequest(permissions[i])) {
+                neverAskAgain = neverAskAgain.union(permission);
+                neverAskAgainGroups = neverAskAgainGroups.union(groups.getRationaleGroup(permissions[i]));
+            } else {
+                denied = denied.union(permission);
+                deniedGroups = deniedGroups.union(groups.getRationaleGroup(permissions[i]));
+            }
+            if (outcome == PermissionMetrics.OUTCOME_SUCCESS) {
+                outcome = neverAskAgain.containsAll(permission)
+                        ? PermissionMetrics.OUTCOME_NEVER_ASK_AGAIN
+                        : PermissionMetrics.OUTCOME_DENIED;
+            }
+        }
+        return new PermissionResult(request.checkedPermissions.minus(denied).minus(neverAskAgain), denied, neverAskAgain, outcome);
     }
 
 
     /**
-     * This method run neverAskAgain callback if neverAskAgainListener not null
+     * @param permission permission, which was asked
+     * @param granted    true if permission granted
      */
-    private void runNeverAskAgain() {
-        if (neverAskAgainListener != null) {
-            neverAskAgainListener.run();
+    private void cacheResult(String permission, boolean granted) {
+        cachePermission(permission, granted);
+        if (!granted && history != null) {
+            history.recordDenied(permission);
         }
     }
 
 
     /**
+     * @param permission denied permission
+     * @return true if user checked "Never Ask Again"
+     */
+    private boolean isNeverAskAgainAfterRequest(String permission) {
+        final boolean neverAskAgain = isNeverAskAgain(permission);
+        if (history != null) {
+            history.recordNeverAskAgain(permission, neverAskAgain);
+        }
+        return neverAskAgain;
+    }
+
+
+    /**
+     * This method run callback if it's not null
+     *
+     * @param listener one of callbacks of request
+     */
+    private static void runListener(Runnable listener) {
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+
+    /**
+     * This method publish permission state to all helpers, until registry will be invalidated
+     *
+     * @param permission permission, which state is known
+     * @param granted    true if permission granted
+     */
+    private void cachePermission(String permission, boolean granted) {
+        registry.publish(PermissionSet.of(permission), granted);
+        if (granted && history != null) {
+            history.recordGranted(permission);
+        }
+    }
+
+
+    /**
+     * This method ask system only if state is not known by registry.
+     * Concurrent checks of the same permission by several helpers ask system once.
+     * If host is gone, state is unknown: it's handled as not granted by this helper only and isn't published
+     *
      * @param permission for check
-     * @return true if permission granted and false if permission not granted
+     * @return true if permission granted and false if permission not granted or host is gone
      */
-    private boolean isPermissionNotGranted(String permission) {
-        if (activity != null) {
-            return ActivityCompat.checkSelfPermission(activity, permission) != PackageManager.PERMISSION_GRANTED;
-        } else {
-            return ActivityCompat.checkSelfPermission(fragment.getContext(), permission) != PackageManager.PERMISSION_GRANTED;
+    private boolean isPermissionNotGrantedBySystem(String permission) {
+        try {
+            return !registry.isGranted(permission, backend);
+        } catch (IllegalStateException hostGone) {
+            return true;
         }
     }
 
 
     /**
+     * This method clear known permissions state of all helpers. Next check will ask system again.
+     * Permission can be reset outside of application, so "never ask again" of history is forgotten too
+     */
+    void invalidateCache() {
+        registry.invalidate();
+        if (history != null) {
+            history.forgetNeverAskAgain();
+        }
+    }
+
+
+    /**
+     * System doesn't show rationale both for permission, which was never asked,
+     * and for "never ask again", so history is used to tell them apart, if it's set
+     *
      * @param permission for check neverAskAgain
      * @return true if user checked "Never Ask Again"
      */
     @SuppressLint("NewApi")
     private boolean isNeverAskAgain(String permission) {
-        if (activity != null) {
-            return !activity.shouldShowRequestPermissionRationale(permission);
-        } else {
-            return !fragment.shouldShowRequestPermissionRationale(permission);
+        if (history != null && history.isNeverAsked(permission)) {
+            return false;
+        }
+        return !backend.shouldShowRationale(permission);
+    }
+
+
+    /**
+     * This method start observing permissions state. State is checked again only
+     * when host comes back to foreground, for example from application settings,
+     * and listener is called only if something changed.
+     * Result of request of this helper is delivered to observations right away.
+     * Call it when host is attached, observation stops automatically when host is destroyed
+     *
+     * @param listener    called with granted and revoked permissions
+     * @param permissions permissions for observe
+     * @return current object
+     */
+    public PermissionHelper observe(PermissionChangeListener listener, String... permissions) {
+        observeHostLifecycle();
+        final PermissionSet observedPermissions = PermissionSet.of(permissions);
+        observations.add(new PermissionObservation(listener, observedPermissions, getGrantedPermissions(observedPermissions)));
+        return this;
+    }
+
+
+    /**
+     * @param listener listener, which was passed to {@link #observe(PermissionChangeListener, String...)}
+     * @return current object
+     */
+    public PermissionHelper stopObserving(PermissionChangeListener listener) {
+        for (int i = observations.size() - 1; i >= 0; i--) {
+            if (observations.get(i).listener == listener) {
+                observations.remove(i);
+            }
+        }
+        return this;
+    }
+
+
+    /**
+     * This method check all observed permissions once and notify observations about changes
+     */
+    private void notifyObservations() {
+        if (observations.isEmpty()) {
+            return;
+        }
+        final PermissionObservation[] currentObservations = observations.toArray(new PermissionObservation[observations.size()]);
+        PermissionSet observedPermissions = PermissionSet.EMPTY;
+        for (PermissionObservation observation : currentObservations) {
+            observedPermissions = observedPermissions.union(observation.permissions);
+        }
+        final PermissionSet grantedPermissions = getGrantedPermissions(observedPermissions);
+        for (PermissionObservation observation : currentObservations) {
+            observation.update(observedPermissions, grantedPermissions);
+        }
+    }
+
+
+    /**
+     * This method notify observations about result of request of this helper without checking permissions again
+     *
+     * @param result state of each permission of request
+     */
+    private void notifyObservations(PermissionResult result) {
+        if (observations.isEmpty()) {
+            return;
+        }
+        final PermissionSet checkedPermissions = result.getGranted().union(result.getDenied()).union(result.getNeverAskAgain());
+        final PermissionObservation[] currentObservations = observations.toArray(new PermissionObservation[observations.size()]);
+        for (PermissionObservation observation : currentObservations) {
+            observation.update(checkedPermissions, result.getGranted());
+        }
+    }
+
+
+    /**
+     * This method check permissions on executor and deliver result on main thread.
+     * It doesn't use and doesn't change configuration of helper, so it's safe to call from any thread
+     *
+     * @param executor    executor, where permissions will be checked
+     * @param listener    called on main thread with permissions state
+     * @param permissions permissions for check
+     */
+    public void statusAsync(Executor executor, PermissionStatusListener listener, String... permissions) {
+        statusAsync(executor, MainThreadExecutor.getInstance(), listener, permissions);
+    }
+
+
+    /**
+     * Same as {@link #statusAsync(Executor, PermissionStatusListener, String...)}, but result will be delivered on callbackExecutor
+     *
+     * @param executor         executor, where permissions will be checked
+     * @param callbackExecutor executor, where listener will be called
+     * @param listener         called with permissions state
+     * @param permissions      permissions for check
+     */
+    public void statusAsync(Executor executor,
+                            final Executor callbackExecutor,
+                            final PermissionStatusListener listener,
+                            String... permissions) {
+        final String[] checkedPermissions = permissions.clone();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final PermissionStatus status = getStatus(checkedPermissions);
+                callbackExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onStatus(status);
+                    }
+                });
+            }
+        });
+    }
+
+
+    /**
+     * This method read grant state of many permissions with one system call, for example for diagnostics screen.
+     * If backend can't read them at once, permissions, which are not known yet, are checked one by one
+     *
+     * @param permissions permissions for check, or nothing to check all permissions, declared in manifest
+     * @return table of granted and denied permissions
+     */
+    public PermissionSnapshot getSnapshot(String... permissions) {
+        PermissionSet checkedPermissions = permissions.length > 0 ? PermissionSet.of(permissions) : backend.getDeclaredPermissions();
+        if (checkedPermissions == null) {
+            checkedPermissions = PermissionSet.EMPTY;
         }
+        if (!isNeedToAskPermissions()) {
+            return new PermissionSnapshot(checkedPermissions, checkedPermissions);
+        }
+        PermissionSet granted = readGrantedPermissions(checkedPermissions);
+        if (granted == null) {
+            granted = getGrantedPermissions(checkedPermissions);
+        }
+        return new PermissionSnapshot(checkedPermissions, granted);
+    }
+
+
+    /**
+     * Same as {@link #statusAsync(Executor, PermissionStatusListener, String...)}, but without host,
+     * for example in Application.onCreate. Known state is shared with helpers of activities and fragments.
+     * Rationale needs activity, so {@link PermissionStatus#shouldShowRationale(String)} is always false
+     *
+     * @param context     any context of application
+     * @param executor    executor, where permissions will be checked
+     * @param listener    called on main thread with permissions state
+     * @param permissions permissions for check
+     */
+    public static void statusAsync(Context context,
+                                   Executor executor,
+                                   PermissionStatusListener listener,
+                                   String... permissions) {
+        forApplication(context).statusAsync(executor, listener, permissions);
+    }
+
+
+    /**
+     * Same as {@link #getSnapshot(String...)}, but without host, for example in Application.onCreate.
+     * Known state is shared with helpers of activities and fragments
+     *
+     * @param context     any context of application
+     * @param permissions permissions for check, or nothing to check all permissions, declared in manifest
+     * @return table of granted and denied permissions
+     */
+    public static PermissionSnapshot getSnapshot(Context context, String... permissions) {
+        return forApplication(context).getSnapshot(permissions);
+    }
+
+
+    /**
+     * @return helper, which only checks permissions through application context
+     */
+    private static PermissionHelper forApplication(Context context) {
+        return new PermissionHelper(new ContextPermissionBackend(context.getApplicationContext()),
+                PermissionStateRegistry.getInstance());
+    }
+
+
+    /**
+     * This method is called from background, known state is read from registry without locks
+     *
+     * @param permissions permissions for check, copy of array of caller
+     * @return snapshot of permissions state
+     */
+    @SuppressLint("NewApi")
+    private PermissionStatus getStatus(String[] permissions) {
+        final boolean[] granted = new boolean[permissions.length];
+        final boolean[] showRationale = new boolean[permissions.length];
+        final boolean needToAsk = isNeedToAskPermissions();
+        for (int i = 0; i < permissions.length; i++) {
+            granted[i] = !needToAsk || !isPermissionNotGrantedBySystem(permissions[i]);
+            showRationale[i] = !granted[i] && !isNeverAskAgain(permissions[i]);
+        }
+        return new PermissionStatus(permissions, granted, showRationale);
     }
 
 
@@ -418,6 +1480,8 @@ public class PermissionHelper {
         final Uri uri = Uri.fromParts("package", context.getPackageName(), null);
         intent.setAction(Settings.ACTION_APPLICATION_DETAILS_SETTINGS);
         intent.setData(uri);
+        invalidateCache();
+        observeHostLifecycle();
         context.startActivity(intent);
     }
 
@@ -438,12 +1502,11 @@ public class PermissionHelper {
     private void unbind() {
         deniedListener = null;
         successListener = null;
-        if (dialogBeforeRunBuilder != null) {
-            dialogBeforeRunBuilder = null;
-            dialogBeforeAskPositiveButton = DIALOG_WITHOUT_CUSTOM_COLOR;
-        }
+        dialogBeforeRunSpec = null;
+        configuredRequest = null;
         if (neverAskAgainListener != null) {
             neverAskAgainListener = null;
         }
+        resultListener = null;
     }
 }
@@ -0,0 +1,274 @@
+package ru.alexbykov.nopermission;
+
+import android.content.Context;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Persistent history of permissions requests. It tells apart permissions, which were never asked,
+ * from permissions in "never ask again" state, because shouldShowRequestPermissionRationale
+ * returns false for both of them. Known "never ask again" is reported without system dialog:
+ * <pre>
+ * permissionHelper.setHistory(PermissionHistory.getInstance(context))
+ * </pre>
+ * History is kept in small binary file. It's read in background, and changes are written
+ * in background too, all changes during one second in one write.
+ */
+public final class PermissionHistory {
+
+
+    private static final String FILE_NAME = "nopermission_history";
+    private static final int MAGIC = 0x4e6f5048;
+    private static final int VERSION = 1;
+    private static final long WRITE_DELAY_MILLIS = 1000;
+    private static final int FLAG_ASKED = 1;
+    private static final int FLAG_DENIED = 1 << 1;
+    private static final int FLAG_NEVER_ASK_AGAIN = 1 << 2;
+    private static volatile PermissionHistory instance;
+    private final File file;
+    private final long writeDelayMillis;
+    private final Map<String, Integer> flags = new ConcurrentHashMap<>();
+    private final AtomicBoolean writeScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            final Thread thread = new Thread(runnable, "NoPermission-history");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private final Runnable write = new Runnable() {
+        @Override
+        public void run() {
+            writeScheduled.set(false);
+            write();
+        }
+    };
+    private volatile boolean loaded;
+    final Future<?> loading;
+
+
+    /**
+     * @param file             file, where history is kept
+     * @param writeDelayMillis time, during which changes are collected before write
+     */
+    PermissionHistory(File file, long writeDelayMillis) {
+        this.file = file;
+        this.writeDelayMillis = writeDelayMillis;
+        this.loading = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        });
+    }
+
+
+    /**
+     * History is shared by the whole process, so file is written by one instance only
+     *
+     * @param context any context of application
+     * @return history of application
+     */
+    public static PermissionHistory getInstance(Context context) {
+        PermissionHistory history = instance;
+        if (history == null) {
+            synchronized (PermissionHistory.class) {
+                history = instance;
+                if (history == null) {
+                    history = new PermissionHistory(new File(context.getApplicationContext().getFilesDir(), FILE_NAME), WRITE_DELAY_MILLIS);
+                    instance = history;
+                }
+            }
+        }
+        return history;
+    }
+
+
+    /**
+     * @param permission permission for check
+     * @return true if permission was denied with "never ask again" last time and was not granted after that
+     */
+    boolean isNeverAskAgain(String permission) {
+        return (getFlags(permission) & FLAG_NEVER_ASK_AGAIN) != 0;
+    }
+
+
+    /**
+     * @param permission permission for check
+     * @return true only if history is loaded and permission was never asked.
+     * False means, that it was asked or that it's unknown yet
+     */
+    boolean isNeverAsked(String permission) {
+        return loaded && (getFlags(permission) & FLAG_ASKED) == 0;
+    }
+
+
+    /**
+     * This method remember, that permissions are asked
+     *
+     * @param permissions permissions of system request
+     */
+    void recordAsked(String[] permissions) {
+        for (String permission : permissions) {
+            update(permission, getFlags(permission) | FLAG_ASKED);
+        }
+    }
+
+
+    /**
+     * This method forget denials of permission, because it's granted now
+     *
+     * @param permission granted permission
+     */
+    void recordGranted(String permission) {
+        update(permission, getFlags(permission) & FLAG_ASKED);
+    }
+
+
+    /**
+     * @param permission denied permission
+     */
+    void recordDenied(String permission) {
+        update(permission, getFlags(permission) | FLAG_ASKED | FLAG_DENIED);
+    }
+
+
+    /**
+     * @param permission    denied permission
+     * @param neverAskAgain true if user checked "Never Ask Again"
+     */
+    void recordNeverAskAgain(String permission, boolean neverAskAgain) {
+        final int permissionFlags = getFlags(permission) | FLAG_ASKED | FLAG_DENIED;
+        update(permission, neverAskAgain ? permissionFlags | FLAG_NEVER_ASK_AGAIN : permissionFlags & ~FLAG_NEVER_ASK_AGAIN);
+    }
+
+
+    /**
+     * This method forget "never ask again" of all permissions. Permission can be reset in settings
+     * or by auto reset of unused applications, and system can't be asked about it without request,
+     * because it doesn't show rationale both for reset and for "never ask again" permission.
+     * So next request goes to system, which confirms the state
+     */
+    void forgetNeverAskAgain() {
+        for (Map.Entry<String, Integer> entry : flags.entrySet()) {
+            if ((entry.getValue() & FLAG_NEVER_ASK_AGAIN) != 0) {
+                update(entry.getKey(), entry.getValue() & ~FLAG_NEVER_ASK_AGAIN);
+            }
+        }
+    }
+
+
+    /**
+     * This method write history right now, it's used in tests
+     *
+     * @return write task
+     */
+    Future<?> flush() {
+        return executor.submit(write);
+    }
+
+
+    private int getFlags(String permission) {
+        final Integer permissionFlags = flags.get(permission);
+        return permissionFlags == null ? 0 : permissionFlags;
+    }
+
+
+    /**
+     * This method change flags of permission and schedule write, if it's not scheduled yet
+     */
+    private void update(String permission, int permissionFlags) {
+        if (getFlags(permission) == permissionFlags) {
+            return;
+        }
+        flags.put(permission, permissionFlags);
+        if (writeScheduled.compareAndSet(false, true)) {
+            executor.schedule(write, writeDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    /**
+     * This method read history, changes recorded before load are more recent and stay.
+     * History is not important enough to fail, so broken file is ignored
+     */
+    private void load() {
+        if (file.exists()) {
+            DataInputStream input = null;
+            try {
+                input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                if (input.readInt() == MAGIC && input.readInt() == VERSION) {
+                    final int count = input.readInt();
+                    for (int i = 0; i < count; i++) {
+                        final String permission = input.readUTF();
+                        final int permissionFlags = input.readByte();
+                        if (!flags.containsKey(permission)) {
+                            flags.put(permission, permissionFlags);
+                        }
+                    }
+                }
+            } catch (IOException ignored) {
+            } finally {
+                close(input);
+            }
+        }
+        loaded = true;
+    }
+
+
+    /**
+     * This method write whole history into temporary file and replace old file with it,
+     * so history is never left half written
+     */
+    private void write() {
+        final File tempFile = new File(file.getPath() + ".tmp");
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            final Map<String, Integer> snapshot = new HashMap<>(flags);
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(snapshot.size());
+            for (Map.Entry<String, Integer> entry : snapshot.entrySet()) {
+                output.writeUTF(entry.getKey());
+                output.writeByte(entry.getValue());
+            }
+            output.close();
+            output = null;
+            if (!tempFile.renameTo(file)) {
+                tempFile.delete();
+            }
+        } catch (IOException ignored) {
+        } finally {
+            close(output);
+        }
+    }
+
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package ru.alexbykov.nopermission;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Metrics of permission flows. Flows, which finish without system dialog, because permissions
+ * are already granted or known as "never ask again", have result latency, but no request latency.
+ * Share one instance between helpers and export it to your telemetry from any thread:
+ * <pre>
+ * permissionHelper.setMetrics(metrics)
+ * </pre>
+ * Recording doesn't take locks and doesn't allocate, except first record for each permission.
+ * Denied permissions of one request are recorded with outcome of the whole request.
+ */
+public final class PermissionMetrics {
+
+
+    public static final int OUTCOME_SUCCESS = 0;
+    public static final int OUTCOME_DENIED = 1;
+    public static final int OUTCOME_NEVER_ASK_AGAIN = 2;
+    private final ConcurrentMap<String, PermissionFlowStats> stats = new ConcurrentHashMap<>();
+
+
+    /**
+     * @return permissions, which have statistics
+     */
+    public Set<String> getPermissions() {
+        return stats.keySet();
+    }
+
+
+    /**
+     * @param permission permission
+     * @return statistics of permission, or null if it was not asked yet
+     */
+    public PermissionFlowStats getStats(String permission) {
+        return stats.get(permission);
+    }
+
+
+    void recordRequest(String[] permissions, long nanos) {
+        for (String permission : permissions) {
+            statsOf(permission).getRequestLatency().record(nanos);
+        }
+    }
+
+
+    void recordDialog(String[] permissions, long nanos) {
+        for (String permission : permissions) {
+            statsOf(permission).getDialogDuration().record(nanos);
+        }
+    }
+
+
+    void recordResult(String permission, int outcome, long nanos) {
+        statsOf(permission).getResultLatency(outcome).record(nanos);
+    }
+
+
+    void recordResult(String[] permissions, int outcome, long nanos) {
+        for (String permission : permissions) {
+            recordResult(permission, outcome, nanos);
+        }
+    }
+
+
+    private PermissionFlowStats statsOf(String permission) {
+        final PermissionFlowStats permissionStats = stats.get(permission);
+        if (permissionStats != null) {
+            return permissionStats;
+        }
+        final PermissionFlowStats newStats = new PermissionFlowStats(permission);
+        final PermissionFlowStats previousStats = stats.putIfAbsent(permission, newStats);
+        return previousStats != null ? previousStats : newStats;
+    }
+}
@@ -0,0 +1,37 @@
+package ru.alexbykov.nopermission;
+
+/**
+ * Observed permissions of one {@link PermissionChangeListener} and their last known granted state
+ */
+final class PermissionObservation {
+
+
+    final PermissionChangeListener listener;
+    final PermissionSet permissions;
+    private PermissionSet granted;
+
+
+    PermissionObservation(PermissionChangeListener listener, PermissionSet permissions, PermissionSet granted) {
+        this.listener = listener;
+        this.permissions = permissions;
+        this.granted = granted;
+    }
+
+
+    /**
+     * This method compare new state with last known one and notify listener about difference.
+     * Observed permissions, which were not checked, keep their last known state
+     *
+     * @param checked    permissions, which state is known
+     * @param allGranted granted permissions, may contain permissions, which are not observed
+     */
+    void update(PermissionSet checked, PermissionSet allGranted) {
+        final PermissionSet currentGranted = granted.minus(checked).union(permissions.intersect(checked).intersect(allGranted));
+        final PermissionSet newGranted = currentGranted.minus(granted);
+        final PermissionSet revoked = granted.minus(currentGranted);
+        granted = currentGranted;
+        if (!newGranted.isEmpty() || !revoked.isEmpty()) {
+            listener.onPermissionsChanged(newGranted, revoked);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package ru.alexbykov.nopermission;
+
+import android.support.annotation.ColorRes;
+import android.support.annotation.StringRes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable chain of permissions stages, which are asked one after another,
+ * for example foreground location and then background location:
+ * <pre>
+ * private static final PermissionPipeline LOCATION_PIPELINE = new PermissionPipeline.Builder()
+ *         .then(Manifest.permission.ACCESS_FINE_LOCATION)
+ *         .then(Manifest.permission.ACCESS_BACKGROUND_LOCATION)
+ *         .withDialogBeforeRun(R.string.title, R.string.message, R.string.ok)
+ *         .build();
+ *
+ * permissionHelper.run(LOCATION_PIPELINE).addListener(...);
+ * </pre>
+ * State of all permissions is resolved once before the first stage,
+ * stages, which are already granted, are skipped without dialogs.
+ * Next stage is asked only if all permissions of previous one are granted.
+ */
+public final class PermissionPipeline {
+
+
+    final PermissionSet permissions;
+    final PermissionSet[] stages;
+    final RationaleDialogSpec[] dialogSpecs;
+
+
+    private PermissionPipeline(PermissionSet[] stages, RationaleDialogSpec[] dialogSpecs) {
+        PermissionSet permissions = PermissionSet.EMPTY;
+        for (PermissionSet stage : stages) {
+            permissions = permissions.union(stage);
+        }
+        this.permissions = permissions;
+        this.stages = stages;
+        this.dialogSpecs = dialogSpecs;
+    }
+
+
+    /**
+     * @return count of stages
+     */
+    public int getStagesCount() {
+        return stages.length;
+    }
+
+
+    /**
+     * This method build result of pipeline, which is stopped on stage.
+     * Permissions of next stages are not asked, so they are denied, unless they are already granted
+     *
+     * @param stage        index of stage, which is not granted
+     * @param granted      permissions of previous stages
+     * @param stageResult  result of stage
+     * @param knownGranted permissions, which are known as granted
+     * @return result with all permissions of pipeline
+     */
+    PermissionResult getStoppedResult(int stage, PermissionSet granted, PermissionResult stageResult, PermissionSet knownGranted) {
+        PermissionSet notAsked = PermissionSet.EMPTY;
+        for (int i = stage + 1; i < stages.length; i++) {
+            notAsked = notAsked.union(stages[i]);
+        }
+        final PermissionSet notAskedGranted = notAsked.intersect(knownGranted);
+        return new PermissionResult(granted.union(stageResult.getGranted()).union(notAskedGranted),
+                stageResult.getDenied().union(notAsked.minus(notAskedGranted)),
+                stageResult.getNeverAskAgain());
+    }
+
+
+    /**
+     * Each {@link #then(String...)} starts new stage, dialog settings are applied to the last stage
+     */
+    public static final class Builder {
+
+
+        private final List<PermissionSet> stages = new ArrayList<>();
+        private final List<RationaleDialogSpec> dialogSpecs = new ArrayList<>();
+        private final List<Integer> dialogPositiveButtonColors = new ArrayList<>();
+
+
+        /**
+         * @param permissions permissions of the next stage
+         * @return current object
+         */
+        public Builder then(String... permissions) {
+            stages.add(PermissionSet.ordered(permissions));
+            dialogSpecs.add(null);
+            dialogPositiveButtonColors.add(RationaleDialogSpec.WITHOUT_CUSTOM_COLOR);
+            return this;
+        }
+
+
+        /**
+         * This method setup custom dialog before permissions of the last stage will be asked.
+         * Dialog will be shown only if permissions not granted
+         *
+         * @param titleRes          dialog title string resource
+         * @param messageRes        dialog message string resource
+         * @param positiveButtonRes dialog positive button string resource
+         * @return current object
+         * @throws RuntimeException if there is no stage yet
+         */
+        public Builder withDialogBeforeRun(@StringRes int titleRes,
+                                           @StringRes int messageRes,
+                                           @StringRes int positiveButtonRes) {
+            dialogSpecs.set(getLastStage(), new RationaleDialogSpec(titleRes, messageRes, positiveButtonRes,
+                    RationaleDialogSpec.WITHOUT_CUSTOM_COLOR));
+            return this;
+        }
+
+
+        /**
+         * @param colorRes dialog positive button color resource of the last stage
+         * @return current object
+         * @throws RuntimeException if there is no stage yet
+         */
+        public Builder setDialogPositiveButtonColor(@ColorRes int colorRes) {
+            dialogPositiveButtonColors.set(getLastStage(), colorRes);
+            return this;
+        }
+
+
+        private int getLastStage() {
+            if (stages.isEmpty()) {
+                throw new RuntimeException("Pipeline has no stages. You must call then method before dialog settings");
+            }
+            return stages.size() - 1;
+        }
+
+
+        /**
+         * @return immutable pipeline
+         * @throws RuntimeException if pipeline has no stages or one of stages has no permissions
+         */
+        public PermissionPipeline build() {
+            if (stages.isEmpty()) {
+                throw new RuntimeException("Pipeline has no stages. You must call then method at least once");
+            }
+            final PermissionSet[] stagesArray = new PermissionSet[stages.size()];
+            final RationaleDialogSpec[] dialogSpecsArray = new RationaleDialogSpec[stages.size()];
+            for (int i = 0; i < stagesArray.length; i++) {
+                if (stages.get(i).isEmpty()) {
+                    throw new RuntimeException("Stage " + i + " of pipeline has no permissions");
+                }
+                stagesArray[i] = stages.get(i);
+                final RationaleDialogSpec dialogSpec = dialogSpecs.get(i);
+                dialogSpecsArray[i] = dialogSpec == null ? null : dialogSpec.withPositiveButtonColor(dialogPositiveButtonColors.get(i));
+            }
+            return new PermissionPipeline(stagesArray, dialogSpecsArray);
+        }
+    }
+}
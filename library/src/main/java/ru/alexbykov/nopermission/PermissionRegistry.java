@@ -0,0 +1,65 @@
+package ru.alexbykov.nopermission;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide registry, which interns permission strings into small int ids.
+ * Ids are stable while process is alive and are used as bit indexes by {@link PermissionSet}.
+ * Lookup of registered permission is lock-free and doesn't allocate.
+ */
+final class PermissionRegistry {
+
+
+    static final int NOT_REGISTERED = -1;
+    private static final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private static volatile String[] names = new String[0];
+
+
+    private PermissionRegistry() {
+    }
+
+
+    /**
+     * @param permission permission string
+     * @return id of permission, permission will be registered if it's new
+     */
+    static int idOf(String permission) {
+        final Integer id = ids.get(permission);
+        return id != null ? id : register(permission);
+    }
+
+
+    /**
+     * @param permission permission string
+     * @return id of permission or {@link #NOT_REGISTERED}
+     */
+    static int find(String permission) {
+        final Integer id = ids.get(permission);
+        return id != null ? id : NOT_REGISTERED;
+    }
+
+
+    /**
+     * @param id id of registered permission
+     * @return permission string
+     */
+    static String nameOf(int id) {
+        return names[id];
+    }
+
+
+    private static synchronized int register(String permission) {
+        final Integer registeredId = ids.get(permission);
+        if (registeredId != null) {
+            return registeredId;
+        }
+        final String[] current = names;
+        final int id = current.length;
+        final String[] next = Arrays.copyOf(current, id + 1);
+        next[id] = permission;
+        names = next;
+        ids.put(permission, id);
+        return id;
+    }
+}
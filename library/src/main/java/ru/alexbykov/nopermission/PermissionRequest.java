@@ -0,0 +1,184 @@
+package ru.alexbykov.nopermission;
+
+import android.support.annotation.ColorRes;
+import android.support.annotation.StringRes;
+
+/**
+ * Immutable permissions request, which is configured once and can be run many times
+ * by any helper with {@link PermissionHelper#run(PermissionRequest)}.
+ * Unlike configuration of helper, it isn't cleared after result, so keep it in a field of your screen:
+ * <pre>
+ * private final PermissionRequest cameraRequest = new PermissionRequest.Builder()
+ *         .check(Manifest.permission.CAMERA)
+ *         .onSuccess(this::openCamera)
+ *         .onDenied(this::showCameraDenied)
+ *         .build();
+ * </pre>
+ * Listeners usually reference screen, so don't keep request in static field,
+ * otherwise it keeps destroyed activity in memory.
+ * Request is safe to share between threads, but listeners are called on thread, where helper is run.
+ */
+public final class PermissionRequest {
+
+
+    final PermissionSet permissions;
+    final Runnable successListener;
+    final Runnable deniedListener;
+    final Runnable neverAskAgainListener;
+    final PermissionResultListener resultListener;
+    final RationaleDialogSpec dialogSpec;
+    final boolean unbindAfterResult;
+    final PermissionResult allGrantedResult;
+    final String[] orderedPermissions;
+
+
+    /**
+     * @param unbindAfterResult true if request is created from configuration of helper,
+     *                          which should be cleared after result
+     */
+    PermissionRequest(PermissionSet permissions,
+                      Runnable successListener,
+                      Runnable deniedListener,
+                      Runnable neverAskAgainListener,
+                      PermissionResultListener resultListener,
+                      RationaleDialogSpec dialogSpec,
+                      boolean unbindAfterResult) {
+        this.permissions = permissions;
+        this.successListener = successListener;
+        this.deniedListener = deniedListener;
+        this.neverAskAgainListener = neverAskAgainListener;
+        this.resultListener = resultListener;
+        this.dialogSpec = dialogSpec;
+        this.unbindAfterResult = unbindAfterResult;
+        this.allGrantedResult = new PermissionResult(permissions, PermissionSet.EMPTY, PermissionSet.EMPTY);
+        this.orderedPermissions = permissions.toArray();
+    }
+
+
+    /**
+     * @return copy of permissions, which will be asked
+     */
+    public String[] getPermissions() {
+        return permissions.toArray();
+    }
+
+
+    /**
+     * Builder has the same methods, as configuration of {@link PermissionHelper}
+     */
+    public static final class Builder {
+
+
+        private PermissionSet permissions = PermissionSet.EMPTY;
+        private Runnable successListener;
+        private Runnable deniedListener;
+        private Runnable neverAskAgainListener;
+        private PermissionResultListener resultListener;
+        private RationaleDialogSpec dialogSpec;
+        private int dialogPositiveButtonColor = RationaleDialogSpec.WITHOUT_CUSTOM_COLOR;
+
+
+        /**
+         * @param permissions is array of permissions, which you want to ask
+         * @return current object
+         */
+        public Builder check(String... permissions) {
+            this.permissions = PermissionSet.ordered(permissions);
+            return this;
+        }
+
+
+        /**
+         * @param spec prepared permissions and dialog before run, which replaces dialog settings of builder
+         * @return current object
+         */
+        public Builder check(PermissionSpec spec) {
+            this.permissions = spec.permissions;
+            this.dialogSpec = spec.dialogSpec;
+            this.dialogPositiveButtonColor = spec.getDialogPositiveButtonColor();
+            return this;
+        }
+
+
+        /**
+         * @param listener called when all permissions granted
+         * @return current object
+         */
+        public Builder onSuccess(Runnable listener) {
+            this.successListener = listener;
+            return this;
+        }
+
+
+        /**
+         * @param listener called when user deny permission
+         * @return current object
+         */
+        public Builder onDenied(Runnable listener) {
+            this.deniedListener = listener;
+            return this;
+        }
+
+
+        /**
+         * @param listener called when permission in status "never ask again"
+         * @return current object
+         */
+        public Builder onNeverAskAgain(Runnable listener) {
+            this.neverAskAgainListener = listener;
+            return this;
+        }
+
+
+        /**
+         * @param listener called with state of each checked permission
+         * @return current object
+         */
+        public Builder onResult(PermissionResultListener listener) {
+            this.resultListener = listener;
+            return this;
+        }
+
+
+        /**
+         * This method setup custom dialog before permissions will be asked.
+         * Dialog will be shown only if permissions not granted
+         *
+         * @param titleRes          dialog title string resource
+         * @param messageRes        dialog message string resource
+         * @param positiveButtonRes dialog positive button string resource
+         * @return current object
+         */
+        public Builder withDialogBeforeRun(@StringRes int titleRes,
+                                           @StringRes int messageRes,
+                                           @StringRes int positiveButtonRes) {
+            this.dialogSpec = new RationaleDialogSpec(titleRes, messageRes, positiveButtonRes,
+                    RationaleDialogSpec.WITHOUT_CUSTOM_COLOR);
+            return this;
+        }
+
+
+        /**
+         * @param colorRes dialog positive button color resource
+         * @return current object
+         */
+        public Builder setDialogPositiveButtonColor(@ColorRes int colorRes) {
+            this.dialogPositiveButtonColor = colorRes;
+            return this;
+        }
+
+
+        /**
+         * @return immutable request
+         * @throws RuntimeException if neither onSuccess and onDenied nor onResult listeners are set
+         */
+        public PermissionRequest build() {
+            if ((successListener == null || deniedListener == null) && resultListener == null) {
+                throw new RuntimeException("permissionSuccessListener or permissionDeniedListener have null reference. You must realize onSuccess and onDenied methods or onResult method");
+            }
+            return new PermissionRequest(permissions, successListener, deniedListener, neverAskAgainListener, resultListener,
+                    dialogSpec == null ? null : dialogSpec.withPositiveButtonColor(dialogPositiveButtonColor),
+                    false);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package ru.alexbykov.nopermission;
+
+import android.app.Activity;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.util.SparseArrayCompat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scheduler merges permission requests, which were started by several helpers at the same time,
+ * into one system dialog per activity. Results are delivered to every helper with its own callbacks.
+ * <p>
+ * Share one instance between helpers of one screen, for example activity and its fragments:
+ * <pre>
+ * permissionHelper.setRequestScheduler(scheduler)
+ * </pre>
+ * Don't forget to forward onRequestPermissionsResult to each helper, as usual.
+ * Scheduler must be used only from main thread.
+ */
+public final class PermissionRequestScheduler {
+
+
+    private static final long NEXT_MESSAGE = 0;
+    private final long windowMillis;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final List<Entry> queue = new ArrayList<>();
+    private final SparseArrayCompat<List<Entry>> batches = new SparseArrayCompat<>();
+    private final Runnable flush = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+
+    /**
+     * Requests are collected while main looper handles current message, and asked with next message
+     */
+    public PermissionRequestScheduler() {
+        this(NEXT_MESSAGE);
+    }
+
+
+    /**
+     * @param windowMillis time, during which requests are collected before system dialog will be shown
+     */
+    public PermissionRequestScheduler(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+
+    /**
+     * This method add request to current window. Window starts with first request
+     *
+     * @param helper  helper, which started request
+     * @param request request, which should be asked
+     */
+    void enqueue(PermissionHelper helper, PendingRequest request) {
+        if (queue.isEmpty()) {
+            if (windowMillis == NEXT_MESSAGE) {
+                handler.post(flush);
+            } else {
+                handler.postDelayed(flush, windowMillis);
+            }
+        }
+        queue.add(new Entry(helper, request));
+    }
+
+
+    /**
+     * This method ask merged permissions, one system request for each activity.
+     * Requests of helpers without activity are not merged, because their hosts are unknown.
+     * Each of them is asked by its own helper, and it's finished as denied, if host is gone.
+     * It's called by main looper, tests call it directly
+     */
+    void flush() {
+        while (!queue.isEmpty()) {
+            final Activity host = queue.get(0).helper.getHostActivity();
+            final List<Entry> batch = new ArrayList<>();
+            final List<String> permissions = new ArrayList<>();
+            for (int i = 0; i < queue.size(); ) {
+                final Entry entry = queue.get(i);
+                if (entry.helper.getHostActivity() != host || (host == null && !batch.isEmpty())) {
+                    i++;
+                    continue;
+                }
+                queue.remove(i);
+                batch.add(entry);
+                entry.helper.onPermissionsRequested(entry.request);
+                for (String permission : entry.request.permissions) {
+                    if (!permissions.contains(permission)) {
+                        permissions.add(permission);
+                    }
+                }
+            }
+            final int requestCode = PendingRequest.allocateRequestCode();
+            batches.put(requestCode, batch);
+            batch.get(0).helper.requestPermissions(permissions.toArray(new String[permissions.size()]), requestCode);
+        }
+    }
+
+
+    /**
+     * This method deliver result of merged request to every helper, which took part in it
+     *
+     * @param requestCode  request code of merged request
+     * @param permissions  merged permissions
+     * @param grantResults merged results
+     * @return false if request code doesn't belong to this scheduler
+     */
+    boolean onRequestPermissionsResult(int requestCode, String[] permissions, int[] grantResults) {
+        final List<Entry> batch = batches.get(requestCode);
+        if (batch == null) {
+            return false;
+        }
+        batches.remove(requestCode);
+        for (Entry entry : batch) {
+            final String[] requestPermissions = entry.request.permissions;
+            final int[] requestResults = new int[grantResults.length == 0 ? 0 : requestPermissions.length];
+            for (int i = 0; i < requestResults.length; i++) {
+                requestResults[i] = grantResults[indexOf(permissions, requestPermissions[i])];
+            }
+            entry.helper.dispatchResult(entry.request, requestPermissions, requestResults);
+        }
+        return true;
+    }
+
+
+    /**
+     * This method forget requests of helper, which host is destroyed, so scheduler doesn't keep it.
+     * Other helpers of merged request still receive result
+     *
+     * @param helper helper of destroyed host
+     */
+    void release(PermissionHelper helper) {
+        removeEntries(queue, helper);
+        for (int i = batches.size() - 1; i >= 0; i--) {
+            final List<Entry> batch = batches.valueAt(i);
+            removeEntries(batch, helper);
+            if (batch.isEmpty()) {
+                batches.removeAt(i);
+            }
+        }
+        if (queue.isEmpty()) {
+            handler.removeCallbacks(flush);
+        }
+    }
+
+
+    private static void removeEntries(List<Entry> entries, PermissionHelper helper) {
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            if (entries.get(i).helper == helper) {
+                entries.remove(i);
+            }
+        }
+    }
+
+
+    private static int indexOf(String[] permissions, String permission) {
+        for (int i = 0; i < permissions.length; i++) {
+            if (permissions[i].equals(permission)) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("Permission " + permission + " was not asked");
+    }
+
+
+    private static final class Entry {
+
+        final PermissionHelper helper;
+        final PendingRequest request;
+
+        Entry(PermissionHelper helper, PendingRequest request) {
+            this.helper = helper;
+            this.request = request;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package ru.alexbykov.nopermission;
+
+/**
+ * Immutable result of permissions request. Every checked permission is in one of three sets,
+ * so partially granted request can be handled without checking permissions again.
+ */
+public final class PermissionResult {
+
+
+    private final PermissionSet granted;
+    private final PermissionSet denied;
+    private final PermissionSet neverAskAgain;
+    private final int outcome;
+
+
+    /**
+     * Result, which is not built from answer of user, for example when permissions are known before request.
+     * Outcome is "never ask again", if any permission is in this state
+     */
+    PermissionResult(PermissionSet granted, PermissionSet denied, PermissionSet neverAskAgain) {
+        this(granted, denied, neverAskAgain, !neverAskAgain.isEmpty()
+                ? PermissionMetrics.OUTCOME_NEVER_ASK_AGAIN
+                : denied.isEmpty() ? PermissionMetrics.OUTCOME_SUCCESS : PermissionMetrics.OUTCOME_DENIED);
+    }
+
+
+    /**
+     * @param outcome outcome of callbacks, which is decided by the first denied permission of answer
+     */
+    PermissionResult(PermissionSet granted, PermissionSet denied, PermissionSet neverAskAgain, int outcome) {
+        this.granted = granted;
+        this.denied = denied;
+        this.neverAskAgain = neverAskAgain;
+        this.outcome = outcome;
+    }
+
+
+    /**
+     * @return granted permissions, including permissions, which were granted before request
+     */
+    public PermissionSet getGranted() {
+        return granted;
+    }
+
+
+    /**
+     * @return denied permissions, which can be asked again
+     */
+    public PermissionSet getDenied() {
+        return denied;
+    }
+
+
+    /**
+     * @return denied permissions in "never ask again" state
+     */
+    public PermissionSet getNeverAskAgain() {
+        return neverAskAgain;
+    }
+
+
+    /**
+     * @return true if all checked permissions granted
+     */
+    public boolean isAllGranted() {
+        return denied.isEmpty() && neverAskAgain.isEmpty();
+    }
+
+
+    /**
+     * @return one of PermissionMetrics.OUTCOME constants
+     */
+    int getOutcome() {
+        return outcome;
+    }
+
+
+    @Override
+    public String toString() {
+        return "PermissionResult{granted=" + granted + ", denied=" + denied + ", neverAskAgain=" + neverAskAgain + "}";
+    }
+}
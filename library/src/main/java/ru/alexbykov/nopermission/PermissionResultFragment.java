@@ -0,0 +1,153 @@
+package ru.alexbykov.nopermission;
+
+import android.os.Bundle;
+import android.support.v4.app.Fragment;
+import android.support.v4.app.FragmentManager;
+
+/**
+ * Headless retained fragment, which is used by {@link PermissionHelper#attach(android.support.v4.app.FragmentActivity)}.
+ * It receives permissions results instead of your activity or fragment,
+ * and keeps pending request across configuration changes and process death.
+ * <p>
+ * Don't use it directly. It's public only because system should be able to recreate it.
+ */
+public final class PermissionResultFragment extends Fragment {
+
+
+    static final String TAG = "ru.alexbykov.nopermission.PermissionResultFragment";
+    static final int STAGE_NONE = 0;
+    static final int STAGE_DIALOG = 1;
+    static final int STAGE_SYSTEM_REQUEST = 2;
+    static final int STAGE_RESULT = 3;
+    private static final String KEY_STAGE = "nopermission_stage";
+    private static final String KEY_REQUEST_CODE = "nopermission_request_code";
+    private static final String KEY_PERMISSIONS = "nopermission_permissions";
+    private static final String KEY_GRANT_RESULTS = "nopermission_grant_results";
+    private PermissionHelper helper;
+    private int stage = STAGE_NONE;
+    private int requestCode;
+    private String[] permissions;
+    private int[] grantResults;
+
+
+    /**
+     * This method find attached fragment or add new one
+     *
+     * @param fragmentManager fragment manager of activity or fragment, which needs permissions
+     * @return headless fragment
+     */
+    static PermissionResultFragment attach(FragmentManager fragmentManager) {
+        PermissionResultFragment fragment = (PermissionResultFragment) fragmentManager.findFragmentByTag(TAG);
+        if (fragment == null) {
+            fragment = new PermissionResultFragment();
+            fragmentManager.beginTransaction()
+                    .add(fragment, TAG)
+                    .commitNow();
+        }
+        return fragment;
+    }
+
+
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setRetainInstance(true);
+        if (savedInstanceState != null && stage == STAGE_NONE) {
+            stage = savedInstanceState.getInt(KEY_STAGE, STAGE_NONE);
+            requestCode = savedInstanceState.getInt(KEY_REQUEST_CODE);
+            permissions = savedInstanceState.getStringArray(KEY_PERMISSIONS);
+            grantResults = savedInstanceState.getIntArray(KEY_GRANT_RESULTS);
+        }
+    }
+
+
+    @Override
+    public void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (stage != STAGE_NONE) {
+            outState.putInt(KEY_STAGE, stage);
+            outState.putInt(KEY_REQUEST_CODE, requestCode);
+            outState.putStringArray(KEY_PERMISSIONS, permissions);
+            outState.putIntArray(KEY_GRANT_RESULTS, grantResults);
+        }
+    }
+
+
+    @Override
+    public void onRequestPermissionsResult(int requestCode, String[] permissions, int[] grantResults) {
+        if (stage == STAGE_SYSTEM_REQUEST && requestCode == this.requestCode) {
+            this.stage = STAGE_RESULT;
+            this.permissions = permissions;
+            this.grantResults = grantResults;
+        }
+        if (helper != null) {
+            helper.onRequestPermissionsResult(requestCode, permissions, grantResults);
+        }
+    }
+
+
+    /**
+     * This method bind helper of current host instance. Previous helper is forgotten
+     *
+     * @param helper helper, which will receive results
+     */
+    void bind(PermissionHelper helper) {
+        this.helper = helper;
+    }
+
+
+    /**
+     * This method forget helper, if it's still bound, because its host is destroyed
+     *
+     * @param helper helper of destroyed host
+     */
+    void unbind(PermissionHelper helper) {
+        if (this.helper == helper) {
+            this.helper = null;
+        }
+    }
+
+
+    /**
+     * This method remember stage of current request
+     *
+     * @param stage       one of STAGE constants
+     * @param permissions permissions of request
+     * @param requestCode request code of request
+     */
+    void setStage(int stage, String[] permissions, int requestCode) {
+        this.stage = stage;
+        this.permissions = permissions;
+        this.requestCode = requestCode;
+        this.grantResults = null;
+    }
+
+
+    /**
+     * This method forget current request, when its result delivered
+     *
+     * @param requestCode request code of delivered request
+     */
+    void clear(int requestCode) {
+        if (this.requestCode == requestCode) {
+            setStage(STAGE_NONE, null, 0);
+        }
+    }
+
+
+    int getStage() {
+        return stage;
+    }
+
+    int getRequestCode() {
+        return requestCode;
+    }
+
+    String[] getPermissions() {
+        return permissions;
+    }
+
+    int[] getGrantResults() {
+        return grantResults;
+    }
+}
@@ -0,0 +1,15 @@
+package ru.alexbykov.nopermission;
+
+/**
+ * Callback with state of each checked permission, see {@link PermissionHelper#onResult(PermissionResultListener)}
+ */
+public interface PermissionResultListener {
+
+
+    /**
+     * Called after success, denied or never ask again callback
+     *
+     * @param result granted, denied and never ask again permissions
+     */
+    void onResult(PermissionResult result);
+}
@@ -0,0 +1,306 @@
+package ru.alexbykov.nopermission;
+
+import java.util.Arrays;
+
+/**
+ * Immutable set of permissions, backed by bitmask of interned permission ids.
+ * First 64 permissions of process are stored in one long, others in additional long array.
+ * Set operations don't allocate, when result is equal to one of operands or is empty.
+ * Set of checked permissions remembers order, in which they were checked, so they are asked in the same order.
+ */
+public final class PermissionSet {
+
+
+    private static final int BITS_PER_WORD = 64;
+    private static final String[] NO_PERMISSIONS = new String[0];
+    public static final PermissionSet EMPTY = new PermissionSet(0L, null);
+    private final long low;
+    private final long[] high;
+    private final String[] order;
+
+
+    private PermissionSet(long low, long[] high) {
+        this(low, high, null);
+    }
+
+
+    private PermissionSet(long low, long[] high, String[] order) {
+        this.low = low;
+        this.high = high;
+        this.order = order;
+    }
+
+
+    /**
+     * @param permissions permissions for set
+     * @return set of permissions
+     */
+    public static PermissionSet of(String... permissions) {
+        long low = 0L;
+        long[] high = null;
+        for (String permission : permissions) {
+            final int id = PermissionRegistry.idOf(permission);
+            if (id < BITS_PER_WORD) {
+                low |= 1L << id;
+            } else {
+                final int index = id / BITS_PER_WORD - 1;
+                if (high == null || high.length <= index) {
+                    high = high == null ? new long[index + 1] : Arrays.copyOf(high, index + 1);
+                }
+                high[index] |= 1L << id;
+            }
+        }
+        return create(low, high);
+    }
+
+
+    /**
+     * Same as {@link #of(String...)}, but set remembers order of permissions without duplicates,
+     * it's used for checked permissions, which are asked in order of check
+     *
+     * @param permissions permissions for set
+     * @return set of permissions
+     */
+    static PermissionSet ordered(String... permissions) {
+        final PermissionSet set = of(permissions);
+        final int size = set.size();
+        if (size < 2) {
+            return set;
+        }
+        final String[] order = new String[size];
+        int position = 0;
+        for (String permission : permissions) {
+            if (indexOf(order, position, permission) < 0) {
+                order[position++] = permission;
+            }
+        }
+        return new PermissionSet(set.low, set.high, order);
+    }
+
+
+    private static int indexOf(String[] permissions, int count, String permission) {
+        for (int i = 0; i < count; i++) {
+            if (permissions[i].equals(permission)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+
+    private static PermissionSet create(long low, long[] high) {
+        int length = high == null ? 0 : high.length;
+        while (length > 0 && high[length - 1] == 0L) {
+            length--;
+        }
+        if (length == 0) {
+            return low == 0L ? EMPTY : new PermissionSet(low, null);
+        }
+        return new PermissionSet(low, length == high.length ? high : Arrays.copyOf(high, length));
+    }
+
+
+    private int wordCount() {
+        return high == null ? 1 : high.length + 1;
+    }
+
+
+    private long word(int index) {
+        if (index == 0) {
+            return low;
+        }
+        return high != null && index <= high.length ? high[index - 1] : 0L;
+    }
+
+
+    /**
+     * @param permission permission for check
+     * @return true if set contains permission
+     */
+    public boolean contains(String permission) {
+        final int id = PermissionRegistry.find(permission);
+        return id != PermissionRegistry.NOT_REGISTERED && containsId(id);
+    }
+
+
+    boolean containsId(int id) {
+        return (word(id / BITS_PER_WORD) & (1L << id)) != 0L;
+    }
+
+
+    /**
+     * @param other set for check
+     * @return true if this set contains all permissions of other set
+     */
+    public boolean containsAll(PermissionSet other) {
+        for (int i = 0; i < other.wordCount(); i++) {
+            if ((other.word(i) & ~word(i)) != 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * @param other set for check
+     * @return true if sets have at least one common permission
+     */
+    public boolean intersects(PermissionSet other) {
+        final int count = Math.min(wordCount(), other.wordCount());
+        for (int i = 0; i < count; i++) {
+            if ((word(i) & other.word(i)) != 0L) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * @param other set for union
+     * @return set with permissions of both sets
+     */
+    public PermissionSet union(PermissionSet other) {
+        if (containsAll(other)) {
+            return this;
+        }
+        if (other.containsAll(this)) {
+            return other;
+        }
+        final int count = Math.max(wordCount(), other.wordCount());
+        final long[] high = new long[count - 1];
+        for (int i = 1; i < count; i++) {
+            high[i - 1] = word(i) | other.word(i);
+        }
+        return create(low | other.low, high);
+    }
+
+
+    /**
+     * @param other set for intersection
+     * @return set with permissions, which both sets contain
+     */
+    public PermissionSet intersect(PermissionSet other) {
+        if (other.containsAll(this)) {
+            return this;
+        }
+        if (!intersects(other)) {
+            return EMPTY;
+        }
+        final int count = Math.min(wordCount(), other.wordCount());
+        final long[] high = new long[count - 1];
+        for (int i = 1; i < count; i++) {
+            high[i - 1] = word(i) & other.word(i);
+        }
+        return create(low & other.low, high);
+    }
+
+
+    /**
+     * @param other set of permissions, which should be removed
+     * @return set with permissions of this set, which other set doesn't contain
+     */
+    public PermissionSet minus(PermissionSet other) {
+        if (!intersects(other)) {
+            return this;
+        }
+        if (other.containsAll(this)) {
+            return EMPTY;
+        }
+        final long[] high = new long[wordCount() - 1];
+        for (int i = 1; i < wordCount(); i++) {
+            high[i - 1] = word(i) & ~other.word(i);
+        }
+        return create(low & ~other.low, high);
+    }
+
+
+    /**
+     * @return true if set doesn't contain permissions
+     */
+    public boolean isEmpty() {
+        return this == EMPTY || (low == 0L && high == null);
+    }
+
+
+    /**
+     * @return count of permissions in set
+     */
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < wordCount(); i++) {
+            size += Long.bitCount(word(i));
+        }
+        return size;
+    }
+
+
+    /**
+     * @return new array of permissions, ordered as they were checked,
+     * or by registration in process for result of set operation
+     */
+    public String[] toArray() {
+        if (isEmpty()) {
+            return NO_PERMISSIONS;
+        }
+        if (order != null) {
+            return order.clone();
+        }
+        final String[] permissions = new String[size()];
+        int position = 0;
+        for (int i = 0; i < wordCount(); i++) {
+            long word = word(i);
+            while (word != 0L) {
+                final int bit = Long.numberOfTrailingZeros(word);
+                permissions[position++] = PermissionRegistry.nameOf(i * BITS_PER_WORD + bit);
+                word &= word - 1;
+            }
+        }
+        return permissions;
+    }
+
+
+    /**
+     * @param other set of permissions, which should be removed
+     * @return new array of permissions of this set, which other set doesn't contain, in the same order as {@link #toArray()}
+     */
+    String[] toArrayWithout(PermissionSet other) {
+        if (order == null || !intersects(other)) {
+            return minus(other).toArray();
+        }
+        final String[] permissions = new String[order.length];
+        int position = 0;
+        for (String permission : order) {
+            if (!other.contains(permission)) {
+                permissions[position++] = permission;
+            }
+        }
+        return Arrays.copyOf(permissions, position);
+    }
+
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PermissionSet)) {
+            return false;
+        }
+        final PermissionSet other = (PermissionSet) o;
+        return low == other.low && Arrays.equals(high, other.high);
+    }
+
+
+    @Override
+    public int hashCode() {
+        return 31 * (int) (low ^ (low >>> 32)) + Arrays.hashCode(high);
+    }
+
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
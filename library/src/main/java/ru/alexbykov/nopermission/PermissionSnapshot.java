@@ -0,0 +1,103 @@
+package ru.alexbykov.nopermission;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.Build;
+
+/**
+ * Immutable table of granted and denied permissions, which is read with one system call,
+ * see {@link PermissionHelper#getSnapshot(String...)}.
+ * Unlike {@link PermissionStatus}, it doesn't contain rationale, because rationale is asked for each permission separately.
+ */
+public final class PermissionSnapshot {
+
+
+    private final PermissionSet permissions;
+    private final PermissionSet granted;
+
+
+    PermissionSnapshot(PermissionSet permissions, PermissionSet granted) {
+        this.permissions = permissions;
+        this.granted = granted;
+    }
+
+
+    /**
+     * This method read grant state of all permissions, requested in manifest, with one PackageManager call
+     *
+     * @param context any context of application
+     * @return granted permissions, or null if API level doesn't report grant state (API <16)
+     */
+    static PermissionSet readGrantedPermissions(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            return null;
+        }
+        final PackageInfo packageInfo;
+        try {
+            packageInfo = context.getPackageManager().getPackageInfo(context.getPackageName(), PackageManager.GET_PERMISSIONS);
+        } catch (PackageManager.NameNotFoundException e) {
+            throw new RuntimeException("Can't read permissions of " + context.getPackageName(), e);
+        }
+        if (packageInfo.requestedPermissions == null || packageInfo.requestedPermissionsFlags == null) {
+            return PermissionSet.EMPTY;
+        }
+        int count = 0;
+        final String[] granted = new String[packageInfo.requestedPermissions.length];
+        for (int i = 0; i < granted.length; i++) {
+            if ((packageInfo.requestedPermissionsFlags[i] & PackageInfo.REQUESTED_PERMISSION_GRANTED) != 0) {
+                granted[count++] = packageInfo.requestedPermissions[i];
+            }
+        }
+        final String[] grantedPermissions = new String[count];
+        System.arraycopy(granted, 0, grantedPermissions, 0, count);
+        return PermissionSet.of(grantedPermissions);
+    }
+
+
+    /**
+     * @return checked permissions
+     */
+    public PermissionSet getPermissions() {
+        return permissions;
+    }
+
+
+    /**
+     * @return granted permissions
+     */
+    public PermissionSet getGranted() {
+        return granted;
+    }
+
+
+    /**
+     * @return permissions, which are not granted
+     */
+    public PermissionSet getDenied() {
+        return permissions.minus(granted);
+    }
+
+
+    /**
+     * @param permission one of checked permissions
+     * @return true if permission granted
+     */
+    public boolean isGranted(String permission) {
+        return granted.contains(permission);
+    }
+
+
+    /**
+     * @return true if all checked permissions granted
+     */
+    public boolean isAllGranted() {
+        return granted.containsAll(permissions);
+    }
+
+
+    @Override
+    public String toString() {
+        return "PermissionSnapshot{granted=" + granted + ", denied=" + getDenied() + "}";
+    }
+}
@@ -0,0 +1,78 @@
+package ru.alexbykov.nopermission;
+
+import android.support.annotation.ColorRes;
+import android.support.annotation.StringRes;
+
+/**
+ * Immutable permissions and dialog before run, which are prepared once,
+ * so {@link PermissionHelper#check(PermissionSpec)} doesn't walk and hash permissions on each call.
+ * Usually it's generated from {@link NeedsPermissions}, but it can be created manually too:
+ * <pre>
+ * private static final PermissionSpec CAMERA = PermissionSpec.of(Manifest.permission.CAMERA)
+ *         .withDialogBeforeRun(R.string.title, R.string.message, R.string.ok);
+ * </pre>
+ */
+public final class PermissionSpec {
+
+
+    final PermissionSet permissions;
+    final RationaleDialogSpec dialogSpec;
+
+
+    private PermissionSpec(PermissionSet permissions, RationaleDialogSpec dialogSpec) {
+        this.permissions = permissions;
+        this.dialogSpec = dialogSpec;
+    }
+
+
+    /**
+     * @param permissions permissions, which will be asked
+     * @return spec without dialog before run
+     */
+    public static PermissionSpec of(String... permissions) {
+        return new PermissionSpec(PermissionSet.ordered(permissions), null);
+    }
+
+
+    /**
+     * @param titleRes          dialog title string resource
+     * @param messageRes        dialog message string resource
+     * @param positiveButtonRes dialog positive button string resource
+     * @return new spec with dialog before run
+     */
+    public PermissionSpec withDialogBeforeRun(@StringRes int titleRes,
+                                              @StringRes int messageRes,
+                                              @StringRes int positiveButtonRes) {
+        return new PermissionSpec(permissions, new RationaleDialogSpec(titleRes, messageRes, positiveButtonRes,
+                getDialogPositiveButtonColor()));
+    }
+
+
+    /**
+     * @param colorRes dialog positive button color resource
+     * @return new spec with color
+     * @throws RuntimeException if dialog before run is not set
+     */
+    public PermissionSpec setDialogPositiveButtonColor(@ColorRes int colorRes) {
+        if (dialogSpec == null) {
+            throw new RuntimeException("Dialog before run is not set. You must call withDialogBeforeRun method before color");
+        }
+        return new PermissionSpec(permissions, dialogSpec.withPositiveButtonColor(colorRes));
+    }
+
+
+    /**
+     * @return permissions, which will be asked
+     */
+    public PermissionSet getPermissions() {
+        return permissions;
+    }
+
+
+    /**
+     * @return color of dialog positive button, or default color
+     */
+    int getDialogPositiveButtonColor() {
+        return dialogSpec == null ? RationaleDialogSpec.WITHOUT_CUSTOM_COLOR : dialogSpec.positiveButtonColorRes;
+    }
+}
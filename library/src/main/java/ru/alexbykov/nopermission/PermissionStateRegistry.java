@@ -0,0 +1,244 @@
+package ru.alexbykov.nopermission;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Latest known permissions state, shared by all helpers of process.
+ * Reads are lock-free: state is immutable snapshot, which is replaced with compare-and-set.
+ * Concurrent lookups of the same unknown permission are deduplicated,
+ * the first caller asks system and others wait for its answer.
+ * <p>
+ * Helpers of activities and fragments use process-wide instance, because system keeps one state for process.
+ * Helpers of custom backends share instance per backend, so simulated backends don't affect each other.
+ */
+final class PermissionStateRegistry {
+
+
+    private static final int ANY_GENERATION = -1;
+    private static final PermissionStateRegistry INSTANCE = new PermissionStateRegistry();
+    private static final Map<PermissionBackend, PermissionStateRegistry> customRegistries = new WeakHashMap<>();
+    private final AtomicReference<State> state = new AtomicReference<>(new State(PermissionSet.EMPTY, PermissionSet.EMPTY, 0));
+    private final ConcurrentHashMap<String, FutureTask<Boolean>> lookups = new ConcurrentHashMap<>();
+
+
+    PermissionStateRegistry() {
+    }
+
+
+    /**
+     * @return registry of system permissions state
+     */
+    static PermissionStateRegistry getInstance() {
+        return INSTANCE;
+    }
+
+
+    /**
+     * @param backend custom backend
+     * @return registry, shared by all helpers of given backend
+     */
+    static PermissionStateRegistry forBackend(PermissionBackend backend) {
+        synchronized (customRegistries) {
+            PermissionStateRegistry registry = customRegistries.get(backend);
+            if (registry == null) {
+                registry = new PermissionStateRegistry();
+                customRegistries.put(backend, registry);
+            }
+            return registry;
+        }
+    }
+
+
+    /**
+     * @return permissions, which are known as granted
+     */
+    PermissionSet getGrantedPermissions() {
+        return state.get().granted;
+    }
+
+
+    /**
+     * @return permissions, which are known as denied
+     */
+    PermissionSet getDeniedPermissions() {
+        return state.get().denied;
+    }
+
+
+    /**
+     * @return generation of state, it's changed by {@link #invalidate()}
+     */
+    int getGeneration() {
+        return state.get().generation;
+    }
+
+
+    /**
+     * This method publish state, which was read in background, only for permissions, which are still unknown,
+     * because newer state could be published while it was read.
+     * Nothing is published, if registry was invalidated after reading
+     *
+     * @param granted    granted permissions
+     * @param denied     denied permissions
+     * @param generation generation, in which state was read
+     */
+    void publishUnknown(PermissionSet granted, PermissionSet denied, int generation) {
+        while (true) {
+            final State current = state.get();
+            if (generation != current.generation) {
+                return;
+            }
+            final PermissionSet known = current.granted.union(current.denied);
+            final State next = new State(current.granted.union(granted.minus(known)),
+                    current.denied.union(denied.minus(known)), generation);
+            if (state.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * This method return known state, or ask backend once for all concurrent callers.
+     * Answer is published, unless registry was invalidated while backend was asked.
+     * If backend can't read state, because its host is gone, nothing is published and exception is thrown to all callers
+     *
+     * @param permission permission for check
+     * @param backend    backend, which is asked, if state is unknown
+     * @return true if permission granted
+     * @throws IllegalStateException if host of backend is gone
+     */
+    boolean isGranted(final String permission, final PermissionBackend backend) {
+        final State current = state.get();
+        if (current.granted.contains(permission)) {
+            return true;
+        }
+        if (current.denied.contains(permission)) {
+            return false;
+        }
+        final FutureTask<Boolean> lookup = new FutureTask<>(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                final boolean granted = backend.isGranted(permission);
+                publish(PermissionSet.of(permission), granted, current.generation);
+                return granted;
+            }
+        });
+        final FutureTask<Boolean> runningLookup = lookups.putIfAbsent(permission, lookup);
+        if (runningLookup != null) {
+            return await(runningLookup);
+        }
+        try {
+            lookup.run();
+            return await(lookup);
+        } finally {
+            lookups.remove(permission, lookup);
+        }
+    }
+
+
+    /**
+     * This method wait for lookup without giving up on interruption, interruption status is restored after it
+     */
+    private static boolean await(FutureTask<Boolean> lookup) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return lookup.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    final Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new RuntimeException(cause);
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+
+    /**
+     * This method publish state, received from user or from other source, which is newer than any lookup
+     *
+     * @param permissions permissions, which state is known
+     * @param granted     true if permissions granted
+     */
+    void publish(PermissionSet permissions, boolean granted) {
+        publish(permissions, granted, ANY_GENERATION);
+    }
+
+
+    /**
+     * @param generation generation, in which state was read, or ANY_GENERATION if state is always actual
+     */
+    private void publish(PermissionSet permissions, boolean granted, int generation) {
+        if (permissions.isEmpty()) {
+            return;
+        }
+        while (true) {
+            final State current = state.get();
+            if (generation != ANY_GENERATION && generation != current.generation) {
+                return;
+            }
+            final State next = granted
+                    ? new State(current.granted.union(permissions), current.denied.minus(permissions), current.generation)
+                    : new State(current.granted.minus(permissions), current.denied.union(permissions), current.generation);
+            if (next.granted == current.granted && next.denied == current.denied) {
+                return;
+            }
+            if (state.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * This method forget known state, for example when user could change it in settings.
+     * Lookups, which are running now, will not publish their answers
+     */
+    void invalidate() {
+        while (true) {
+            final State current = state.get();
+            if (state.compareAndSet(current, new State(PermissionSet.EMPTY, PermissionSet.EMPTY, (current.generation + 1) & Integer.MAX_VALUE))) {
+                break;
+            }
+        }
+        lookups.clear();
+    }
+
+
+    /**
+     * Immutable snapshot of state
+     */
+    private static final class State {
+
+
+        final PermissionSet granted;
+        final PermissionSet denied;
+        final int generation;
+
+
+        State(PermissionSet granted, PermissionSet denied, int generation) {
+            this.granted = granted;
+            this.denied = denied;
+            this.generation = generation;
+        }
+    }
+}
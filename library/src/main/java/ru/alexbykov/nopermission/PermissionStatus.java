@@ -0,0 +1,72 @@
+package ru.alexbykov.nopermission;
+
+/**
+ * Immutable snapshot of permissions state at the moment of check.
+ * Rationale is resolved only for permissions, which are not granted.
+ */
+public final class PermissionStatus {
+
+
+    private final String[] permissions;
+    private final boolean[] granted;
+    private final boolean[] showRationale;
+
+
+    PermissionStatus(String[] permissions, boolean[] granted, boolean[] showRationale) {
+        this.permissions = permissions;
+        this.granted = granted;
+        this.showRationale = showRationale;
+    }
+
+
+    /**
+     * @return copy of checked permissions
+     */
+    public String[] getPermissions() {
+        return permissions.clone();
+    }
+
+
+    /**
+     * @param permission one of checked permissions
+     * @return true if permission granted
+     * @throws IllegalArgumentException if permission was not checked
+     */
+    public boolean isGranted(String permission) {
+        return granted[indexOf(permission)];
+    }
+
+
+    /**
+     * @param permission one of checked permissions
+     * @return true if permission denied and rationale should be shown.
+     * False for denied permission means "never ask again" or that it was never asked
+     * @throws IllegalArgumentException if permission was not checked
+     */
+    public boolean shouldShowRationale(String permission) {
+        return showRationale[indexOf(permission)];
+    }
+
+
+    /**
+     * @return true if all checked permissions granted
+     */
+    public boolean isAllGranted() {
+        for (boolean permissionGranted : granted) {
+            if (!permissionGranted) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private int indexOf(String permission) {
+        for (int i = 0; i < permissions.length; i++) {
+            if (permissions[i].equals(permission)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Permission " + permission + " was not checked");
+    }
+}
@@ -0,0 +1,13 @@
+package ru.alexbykov.nopermission;
+
+/**
+ * Callback of {@link PermissionHelper#statusAsync(java.util.concurrent.Executor, PermissionStatusListener, String...)}
+ */
+public interface PermissionStatusListener {
+
+
+    /**
+     * @param status snapshot of permissions state
+     */
+    void onStatus(PermissionStatus status);
+}
@@ -0,0 +1,100 @@
+package ru.alexbykov.nopermission;
+
+import android.support.v4.os.TraceCompat;
+
+/**
+ * System trace sections for phases of {@link PermissionHelper}, visible in systrace and Perfetto.
+ * Tracing is disabled by default, enable it once in Application.onCreate:
+ * <pre>
+ * PermissionTrace.setEnabled(true);
+ * </pre>
+ * When tracing is disabled, each phase costs one volatile field read. Flag can be switched on any thread.
+ * Section is named after phase and count of permissions, for example "NoPermission.askPermissions[2]".
+ */
+public final class PermissionTrace {
+
+
+    static final int GET_PERMISSIONS_FOR_REQUEST = 0;
+    static final int IS_NOT_CONTAINS_NEVER_ASK_AGAIN = 1;
+    static final int SHOW_DIALOG_BEFORE_RUN = 2;
+    static final int ASK_PERMISSIONS = 3;
+    static final int DISPATCH_RESULT = 4;
+    private static final String[] PHASES = {
+            "NoPermission.getPermissionsForRequest",
+            "NoPermission.isNotContainsNeverAskAgain",
+            "NoPermission.showDialogBeforeRun",
+            "NoPermission.askPermissions",
+            "NoPermission.dispatchResult"};
+    private static final int MAX_CACHED_COUNT = 16;
+    private static final String[][] names = new String[PHASES.length][MAX_CACHED_COUNT + 1];
+    private static volatile boolean enabled;
+
+
+    private PermissionTrace() {
+    }
+
+
+    /**
+     * @param enabled true to write trace sections
+     */
+    public static void setEnabled(boolean enabled) {
+        PermissionTrace.enabled = enabled;
+    }
+
+
+    /**
+     * @param phase       one of phase constants
+     * @param permissions permissions of phase
+     * @return true if section is started, it should be passed to {@link #end(boolean)}
+     */
+    static boolean begin(int phase, PermissionSet permissions) {
+        if (!enabled) {
+            return false;
+        }
+        TraceCompat.beginSection(getName(phase, permissions.size()));
+        return true;
+    }
+
+
+    /**
+     * @param phase       one of phase constants
+     * @param permissions permissions of phase
+     * @return true if section is started, it should be passed to {@link #end(boolean)}
+     */
+    static boolean begin(int phase, String[] permissions) {
+        if (!enabled) {
+            return false;
+        }
+        TraceCompat.beginSection(getName(phase, permissions.length));
+        return true;
+    }
+
+
+    /**
+     * This method end section, if it was started, so sections stay balanced,
+     * even if tracing is switched in the middle of phase
+     *
+     * @param started result of begin
+     */
+    static void end(boolean started) {
+        if (started) {
+            TraceCompat.endSection();
+        }
+    }
+
+
+    /**
+     * Names for small counts are created once, so enabled tracing doesn't allocate too
+     */
+    private static String getName(int phase, int count) {
+        if (count > MAX_CACHED_COUNT) {
+            return PHASES[phase] + "[" + count + "]";
+        }
+        String name = names[phase][count];
+        if (name == null) {
+            name = PHASES[phase] + "[" + count + "]";
+            names[phase][count] = name;
+        }
+        return name;
+    }
+}
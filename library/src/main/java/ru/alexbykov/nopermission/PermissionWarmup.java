@@ -0,0 +1,100 @@
+package ru.alexbykov.nopermission;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.support.v4.content.ContextCompat;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Checks permissions in background, when application starts, so the first {@link PermissionHelper#run()}
+ * doesn't ask system on main thread. Call it in Application.onCreate:
+ * <pre>
+ * PermissionWarmup.warmUp(this);
+ * </pre>
+ * Checked state is published to the same registry, which is used by helpers of activities and fragments,
+ * so it's forgotten as any other known state, when host comes back, for example from application settings screen.
+ * State, which helpers learned while warmup was running, is newer and is kept.
+ */
+public final class PermissionWarmup {
+
+
+    private static final Executor NEW_THREAD_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            final Thread thread = new Thread(command, "NoPermission-warmup");
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.start();
+        }
+    };
+
+
+    private PermissionWarmup() {
+    }
+
+
+    /**
+     * This method check all permissions, declared in manifest, on new background thread
+     *
+     * @param context any context of application
+     */
+    public static void warmUp(Context context) {
+        warmUp(context, NEW_THREAD_EXECUTOR);
+    }
+
+
+    /**
+     * This method check given permissions on new background thread
+     *
+     * @param context     any context of application
+     * @param permissions permissions, which will be checked by helpers later
+     */
+    public static void warmUp(Context context, String... permissions) {
+        warmUp(context, NEW_THREAD_EXECUTOR, permissions);
+    }
+
+
+    /**
+     * This method check given permissions on executor,
+     * or all permissions declared in manifest, if nothing is given
+     *
+     * @param context     any context of application
+     * @param executor    background executor
+     * @param permissions permissions, which will be checked by helpers later
+     */
+    public static void warmUp(Context context, Executor executor, final String... permissions) {
+        final Context applicationContext = context.getApplicationContext();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final String[] checkedPermissions = permissions.length > 0
+                        ? permissions
+                        : ManifestPermissionIndex.getDeclaredPermissions(applicationContext).toArray();
+                check(applicationContext, checkedPermissions, PermissionStateRegistry.getInstance());
+            }
+        });
+    }
+
+
+    /**
+     * @param context     application context
+     * @param permissions permissions for check
+     * @param registry    registry, where checked state is published
+     */
+    static void check(Context context, String[] permissions, PermissionStateRegistry registry) {
+        final int generation = registry.getGeneration();
+        PermissionSet granted = PermissionSet.EMPTY;
+        PermissionSet denied = PermissionSet.EMPTY;
+        final boolean runtimePermissions = Build.VERSION.SDK_INT >= Build.VERSION_CODES.M;
+        for (String permission : permissions) {
+            if (!runtimePermissions
+                    || ContextCompat.checkSelfPermission(context, permission) == PackageManager.PERMISSION_GRANTED) {
+                granted = granted.union(PermissionSet.of(permission));
+            } else {
+                denied = denied.union(PermissionSet.of(permission));
+            }
+        }
+        registry.publishUnknown(granted, denied, generation);
+    }
+}
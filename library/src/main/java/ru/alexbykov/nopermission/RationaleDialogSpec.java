@@ -0,0 +1,66 @@
+package ru.alexbykov.nopermission;
+
+import android.support.annotation.ColorRes;
+import android.support.annotation.StringRes;
+
+/**
+ * Resources of dialog, which is shown before permissions will be asked.
+ * Only resource ids are stored, strings and color are resolved when dialog is really shown
+ */
+final class RationaleDialogSpec {
+
+
+    static final int WITHOUT_CUSTOM_COLOR = 0;
+    final int titleRes;
+    final int messageRes;
+    final int positiveButtonRes;
+    final int positiveButtonColorRes;
+
+
+    RationaleDialogSpec(@StringRes int titleRes,
+                        @StringRes int messageRes,
+                        @StringRes int positiveButtonRes,
+                        @ColorRes int positiveButtonColorRes) {
+        this.titleRes = titleRes;
+        this.messageRes = messageRes;
+        this.positiveButtonRes = positiveButtonRes;
+        this.positiveButtonColorRes = positiveButtonColorRes;
+    }
+
+
+    /**
+     * @param colorRes positive button color resource
+     * @return this spec if color is the same, otherwise new spec with color
+     */
+    RationaleDialogSpec withPositiveButtonColor(@ColorRes int colorRes) {
+        return colorRes == positiveButtonColorRes
+                ? this
+                : new RationaleDialogSpec(titleRes, messageRes, positiveButtonRes, colorRes);
+    }
+
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RationaleDialogSpec)) {
+            return false;
+        }
+        final RationaleDialogSpec other = (RationaleDialogSpec) o;
+        return titleRes == other.titleRes
+                && messageRes == other.messageRes
+                && positiveButtonRes == other.positiveButtonRes
+                && positiveButtonColorRes == other.positiveButtonColorRes;
+    }
+
+
+    @Override
+    public int hashCode() {
+        int result = titleRes;
+        result = 31 * result + messageRes;
+        result = 31 * result + positiveButtonRes;
+        result = 31 * result + positiveButtonColorRes;
+        return result;
+    }
+}
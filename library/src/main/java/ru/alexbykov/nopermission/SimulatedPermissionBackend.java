@@ -0,0 +1,260 @@
+package ru.alexbykov.nopermission;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.pm.PackageManager;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * In-memory backend for JVM tests and load tests, which don't need device.
+ * It simulates latency of binder calls and answers of user, scripted for each permission:
+ * <pre>
+ * SimulatedPermissionBackend backend = new SimulatedPermissionBackend()
+ *         .setBinderLatency(50000)
+ *         .answer(SimulatedPermissionBackend.ANSWER_DENY, Manifest.permission.CAMERA);
+ * PermissionHelper permissionHelper = backend.createHelper();
+ * </pre>
+ * Like system, it doesn't show rationale before the first denial and doesn't ask
+ * permissions in "never ask again" state. Backend is not thread safe, use one backend per thread.
+ */
+public final class SimulatedPermissionBackend implements PermissionBackend {
+
+
+    public static final int ANSWER_GRANT = 0;
+    public static final int ANSWER_DENY = 1;
+    public static final int ANSWER_NEVER_ASK_AGAIN = 2;
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+    private final Set<String> grantedPermissions = new HashSet<>();
+    private final Set<String> deniedPermissions = new HashSet<>();
+    private final Set<String> neverAskAgainPermissions = new HashSet<>();
+    private final Map<String, Integer> answers = new HashMap<>();
+    private int defaultAnswer = ANSWER_GRANT;
+    private long binderLatencyNanos;
+    private Executor resultExecutor = DIRECT_EXECUTOR;
+    private PermissionHelper helper;
+    private int checksCount;
+    private int requestsCount;
+
+
+    /**
+     * @return helper, which uses this backend and receives its results
+     */
+    public PermissionHelper createHelper() {
+        return bind(new PermissionHelper(this));
+    }
+
+
+    /**
+     * @param helper helper, created with this backend, which will receive results
+     * @return the same helper
+     */
+    public PermissionHelper bind(PermissionHelper helper) {
+        this.helper = helper;
+        return helper;
+    }
+
+
+    /**
+     * @param nanos time, which every check and request spends on calling thread, as binder call
+     * @return current object
+     */
+    public SimulatedPermissionBackend setBinderLatency(long nanos) {
+        this.binderLatencyNanos = nanos;
+        return this;
+    }
+
+
+    /**
+     * @param executor executor, where results are delivered. By default they are delivered right in request
+     * @return current object
+     */
+    public SimulatedPermissionBackend setResultExecutor(Executor executor) {
+        this.resultExecutor = executor;
+        return this;
+    }
+
+
+    /**
+     * @param answer answer of user for permissions without scripted answer, one of ANSWER constants
+     * @return current object
+     */
+    public SimulatedPermissionBackend setDefaultAnswer(int answer) {
+        this.defaultAnswer = answer;
+        return this;
+    }
+
+
+    /**
+     * @param answer      answer of user for every request of permissions, one of ANSWER constants
+     * @param permissions permissions, which will be answered
+     * @return current object
+     */
+    public SimulatedPermissionBackend answer(int answer, String... permissions) {
+        for (String permission : permissions) {
+            answers.put(permission, answer);
+        }
+        return this;
+    }
+
+
+    /**
+     * @param permissions permissions, which are granted without request
+     * @return current object
+     */
+    public SimulatedPermissionBackend grant(String... permissions) {
+        for (String permission : permissions) {
+            grantedPermissions.add(permission);
+            deniedPermissions.remove(permission);
+            neverAskAgainPermissions.remove(permission);
+        }
+        return this;
+    }
+
+
+    /**
+     * This method return permissions to state, in which they were never asked, as after reinstall
+     *
+     * @param permissions permissions for reset
+     * @return current object
+     */
+    public SimulatedPermissionBackend reset(String... permissions) {
+        for (String permission : permissions) {
+            grantedPermissions.remove(permission);
+            deniedPermissions.remove(permission);
+            neverAskAgainPermissions.remove(permission);
+        }
+        return this;
+    }
+
+
+    /**
+     * @return count of checkSelfPermission, getPackageInfo and shouldShowRequestPermissionRationale calls
+     */
+    public int getChecksCount() {
+        return checksCount;
+    }
+
+
+    /**
+     * @return count of system requests
+     */
+    public int getRequestsCount() {
+        return requestsCount;
+    }
+
+
+    @Override
+    public Context getContext() {
+        return null;
+    }
+
+    @Override
+    public Activity getActivity() {
+        return null;
+    }
+
+    @Override
+    public PermissionSet getDeclaredPermissions() {
+        return null;
+    }
+
+    @Override
+    public boolean isRuntimePermissions() {
+        return true;
+    }
+
+    @Override
+    public boolean isGranted(String permission) {
+        simulateBinderCall();
+        checksCount++;
+        return grantedPermissions.contains(permission);
+    }
+
+    @Override
+    public PermissionSet getGrantedPermissions() {
+        simulateBinderCall();
+        checksCount++;
+        return PermissionSet.of(grantedPermissions.toArray(new String[grantedPermissions.size()]));
+    }
+
+    @Override
+    public boolean shouldShowRationale(String permission) {
+        simulateBinderCall();
+        checksCount++;
+        return deniedPermissions.contains(permission);
+    }
+
+    /**
+     * @throws IllegalStateException if helper is not bound
+     */
+    @Override
+    public boolean requestPermissions(final String[] permissions, final int requestCode) {
+        if (helper == null) {
+            throw new IllegalStateException("Helper is not bound. Create it with createHelper() or call bind()");
+        }
+        simulateBinderCall();
+        requestsCount++;
+        final int[] grantResults = new int[permissions.length];
+        for (int i = 0; i < permissions.length; i++) {
+            grantResults[i] = answer(permissions[i]) ? PackageManager.PERMISSION_GRANTED : PackageManager.PERMISSION_DENIED;
+        }
+        final PermissionHelper receiver = helper;
+        resultExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                receiver.onRequestPermissionsResult(requestCode, permissions, grantResults);
+            }
+        });
+        return true;
+    }
+
+
+    /**
+     * @return true if permission is granted after answer
+     */
+    private boolean answer(String permission) {
+        if (grantedPermissions.contains(permission)) {
+            return true;
+        }
+        if (neverAskAgainPermissions.contains(permission)) {
+            return false;
+        }
+        final Integer scriptedAnswer = answers.get(permission);
+        switch (scriptedAnswer == null ? defaultAnswer : scriptedAnswer) {
+            case ANSWER_GRANT:
+                grant(permission);
+                return true;
+            case ANSWER_NEVER_ASK_AGAIN:
+                deniedPermissions.remove(permission);
+                neverAskAgainPermissions.add(permission);
+                return false;
+            default:
+                deniedPermissions.add(permission);
+                return false;
+        }
+    }
+
+
+    /**
+     * Binder call blocks calling thread, so latency is spent on it, not slept
+     */
+    private void simulateBinderCall() {
+        if (binderLatencyNanos <= 0) {
+            return;
+        }
+        final long end = System.nanoTime() + binderLatencyNanos;
+        while (System.nanoTime() < end) {
+            // busy wait
+        }
+    }
+}
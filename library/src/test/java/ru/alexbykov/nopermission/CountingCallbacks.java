@@ -0,0 +1,30 @@
+package ru.alexbykov.nopermission;
+
+/**
+ * Callbacks for JVM tests, which count how many times each of them was called
+ */
+class CountingCallbacks {
+
+
+    int successCount;
+    int deniedCount;
+    int neverAskAgainCount;
+    final Runnable success = new Runnable() {
+        @Override
+        public void run() {
+            successCount++;
+        }
+    };
+    final Runnable denied = new Runnable() {
+        @Override
+        public void run() {
+            deniedCount++;
+        }
+    };
+    final Runnable neverAskAgain = new Runnable() {
+        @Override
+        public void run() {
+            neverAskAgainCount++;
+        }
+    };
+}
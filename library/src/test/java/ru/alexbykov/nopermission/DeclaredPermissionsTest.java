@@ -0,0 +1,62 @@
+package ru.alexbykov.nopermission;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks, that request with permissions, which are not declared in manifest, fails before any check or request
+ */
+public class DeclaredPermissionsTest {
+
+
+    private static final String CAMERA = "android.permission.CAMERA";
+    private static final String LOCATION = "android.permission.ACCESS_FINE_LOCATION";
+    private static final String CONTACTS = "android.permission.READ_CONTACTS";
+
+    private final CountingCallbacks callbacks = new CountingCallbacks();
+
+
+    @Test
+    public void run_undeclaredPermission_throwsWithUndeclaredOnly() {
+        final FakePermissionBackend host = new FakePermissionBackend().declare(CAMERA);
+        try {
+            new PermissionHelper(host).check(CAMERA, LOCATION)
+                    .onSuccess(callbacks.success)
+                    .onDenied(callbacks.denied)
+                    .run();
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains(LOCATION));
+            assertFalse(e.getMessage().contains(CAMERA));
+        }
+        assertEquals(0, host.checksCount);
+        assertEquals(0, host.requestsCount);
+        assertEquals(0, callbacks.deniedCount);
+    }
+
+
+    @Test
+    public void run_allDeclared_asksPermissions() {
+        final FakePermissionBackend host = new FakePermissionBackend().declare(CAMERA, LOCATION, CONTACTS);
+        new PermissionHelper(host).check(CAMERA, LOCATION)
+                .onSuccess(callbacks.success)
+                .onDenied(callbacks.denied)
+                .run();
+        assertArrayEquals(new String[]{CAMERA, LOCATION}, host.requestedPermissions);
+    }
+
+
+    @Test(expected = RuntimeException.class)
+    public void runPipeline_undeclaredPermissionInLaterStage_throws() {
+        final FakePermissionBackend host = new FakePermissionBackend().declare(CAMERA);
+        new PermissionHelper(host).run(new PermissionPipeline.Builder()
+                .then(CAMERA)
+                .then(LOCATION)
+                .build());
+    }
+}
@@ -0,0 +1,98 @@
+package ru.alexbykov.nopermission;
+
+import android.app.Activity;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks, that dialog before run is created only when it's shown, reused for the same resources,
+ * and request of replaced dialog is finished as denied
+ */
+public class DialogBeforeRunTest {
+
+
+    private static final String CAMERA = "android.permission.CAMERA";
+    private static final String LOCATION = "android.permission.ACCESS_FINE_LOCATION";
+    private static final int TITLE = 1;
+    private static final int OTHER_TITLE = 4;
+    private static final int MESSAGE = 2;
+    private static final int BUTTON = 3;
+    private static final int GRANTED = 0;
+    private static final int DENIED = -1;
+
+    private final FakePermissionBackend host = new FakePermissionBackend().withContext(new Activity());
+    private final DialogPermissionHelper permissionHelper = new DialogPermissionHelper(host);
+
+
+    @Test
+    public void run_allGranted_doesNotCreateDialog() {
+        host.grant(CAMERA);
+        final CountingCallbacks callbacks = run(CAMERA, TITLE);
+        assertEquals(1, callbacks.successCount);
+        assertEquals(0, permissionHelper.dialogsCount);
+    }
+
+
+    @Test
+    public void run_sameResources_reusesDialog() {
+        run(CAMERA, TITLE);
+        final DialogPermissionHelper.HostDialog dialog = permissionHelper.dialog;
+        dialog.clickPositiveButton();
+        permissionHelper.onRequestPermissionsResult(host.requestCode, host.requestedPermissions, new int[]{DENIED});
+
+        run(CAMERA, TITLE);
+        assertEquals(1, permissionHelper.dialogsCount);
+        assertSame(dialog, permissionHelper.dialog);
+        assertTrue(dialog.isShowing());
+    }
+
+
+    @Test
+    public void run_otherResources_createsNewDialog() {
+        run(CAMERA, TITLE);
+        final DialogPermissionHelper.HostDialog dialog = permissionHelper.dialog;
+        dialog.clickPositiveButton();
+        permissionHelper.onRequestPermissionsResult(host.requestCode, host.requestedPermissions, new int[]{DENIED});
+
+        run(CAMERA, OTHER_TITLE);
+        assertEquals(2, permissionHelper.dialogsCount);
+        assertNotSame(dialog, permissionHelper.dialog);
+    }
+
+
+    @Test
+    public void run_dialogReplaced_finishesReplacedRequestAsDenied() {
+        final CountingCallbacks replaced = run(CAMERA, TITLE);
+        final CountingCallbacks current = run(LOCATION, TITLE);
+        assertEquals(1, replaced.deniedCount);
+        assertEquals(0, current.deniedCount);
+        assertEquals(1, permissionHelper.dialogsCount);
+        assertTrue(permissionHelper.dialog.isShowing());
+        assertEquals(0, host.requestsCount);
+
+        permissionHelper.dialog.clickPositiveButton();
+        assertEquals(1, host.requestsCount);
+        assertArrayEquals(new String[]{LOCATION}, host.requestedPermissions);
+        permissionHelper.onRequestPermissionsResult(host.requestCode, host.requestedPermissions, new int[]{GRANTED});
+        assertEquals(1, current.successCount);
+        assertEquals(0, replaced.successCount);
+        assertEquals(1, replaced.deniedCount);
+    }
+
+
+    private CountingCallbacks run(String permission, int titleRes) {
+        final CountingCallbacks callbacks = new CountingCallbacks();
+        permissionHelper.check(permission)
+                .withDialogBeforeRun(titleRes, MESSAGE, BUTTON)
+                .onSuccess(callbacks.success)
+                .onDenied(callbacks.denied)
+                .run();
+        return callbacks;
+    }
+}
@@ -0,0 +1,66 @@
+package ru.alexbykov.nopermission;
+
+import android.app.AlertDialog;
+import android.content.Context;
+import android.content.DialogInterface;
+
+/**
+ * Helper for JVM tests, which creates dialog without window, because real dialog can't be created in JVM
+ */
+class DialogPermissionHelper extends PermissionHelper {
+
+
+    HostDialog dialog;
+    int dialogsCount;
+
+
+    DialogPermissionHelper(PermissionBackend backend) {
+        super(backend);
+    }
+
+
+    @Override
+    AlertDialog createDialogBeforeRun(Context context, RationaleDialogSpec spec,
+                                      DialogInterface.OnClickListener positiveListener) {
+        dialogsCount++;
+        dialog = new HostDialog(context, positiveListener);
+        return dialog;
+    }
+
+
+    /**
+     * Dialog, which keeps context of host, as real dialog does
+     */
+    static final class HostDialog extends AlertDialog {
+
+        final Context host;
+        private final DialogInterface.OnClickListener positiveListener;
+        private boolean showing;
+
+        HostDialog(Context host, DialogInterface.OnClickListener positiveListener) {
+            super(host);
+            this.host = host;
+            this.positiveListener = positiveListener;
+        }
+
+        void clickPositiveButton() {
+            dismiss();
+            positiveListener.onClick(this, BUTTON_POSITIVE);
+        }
+
+        @Override
+        public void show() {
+            showing = true;
+        }
+
+        @Override
+        public void dismiss() {
+            showing = false;
+        }
+
+        @Override
+        public boolean isShowing() {
+            return showing;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package ru.alexbykov.nopermission;
+
+import android.app.Activity;
+import android.content.Context;
+
+import java.lang.ref.WeakReference;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Host for JVM tests, which keeps permissions state in memory
+ */
+class FakePermissionBackend implements PermissionBackend {
+
+
+    final Set<String> grantedPermissions = new HashSet<>();
+    final Set<String> neverAskAgainPermissions = new HashSet<>();
+    int checksCount;
+    int requestsCount;
+    int rationaleChecksCount;
+    String[] requestedPermissions;
+    int requestCode;
+    boolean hostGone;
+    boolean hostCollected;
+    PermissionSet declaredPermissions;
+    private WeakReference<Context> context = new WeakReference<>(null);
+
+
+    FakePermissionBackend grant(String... permissions) {
+        for (String permission : permissions) {
+            grantedPermissions.add(permission);
+        }
+        return this;
+    }
+
+
+    /**
+     * Context is referenced weakly, like activity of real backend. If context is activity, it's host of helper
+     */
+    FakePermissionBackend withContext(Context context) {
+        this.context = new WeakReference<>(context);
+        return this;
+    }
+
+
+    /**
+     * Without declared permissions manifest is unknown and isn't checked
+     */
+    FakePermissionBackend declare(String... permissions) {
+        declaredPermissions = PermissionSet.of(permissions);
+        return this;
+    }
+
+
+    FakePermissionBackend neverAskAgain(String... permissions) {
+        for (String permission : permissions) {
+            neverAskAgainPermissions.add(permission);
+        }
+        return this;
+    }
+
+
+    @Override
+    public Context getContext() {
+        return context.get();
+    }
+
+    @Override
+    public Activity getActivity() {
+        final Context context = this.context.get();
+        return context instanceof Activity ? (Activity) context : null;
+    }
+
+    @Override
+    public PermissionSet getDeclaredPermissions() {
+        return declaredPermissions;
+    }
+
+    @Override
+    public boolean isRuntimePermissions() {
+        return true;
+    }
+
+    @Override
+    public boolean isGranted(String permission) {
+        checksCount++;
+        if (hostCollected) {
+            throw new IllegalStateException("Host is collected, state of " + permission + " is unknown");
+        }
+        return grantedPermissions.contains(permission);
+    }
+
+    @Override
+    public PermissionSet getGrantedPermissions() {
+        return null;
+    }
+
+    @Override
+    public boolean shouldShowRationale(String permission) {
+        rationaleChecksCount++;
+        return !neverAskAgainPermissions.contains(permission);
+    }
+
+    @Override
+    public boolean requestPermissions(String[] permissions, int requestCode) {
+        requestsCount++;
+        this.requestedPermissions = permissions;
+        this.requestCode = requestCode;
+        return !hostGone;
+    }
+}
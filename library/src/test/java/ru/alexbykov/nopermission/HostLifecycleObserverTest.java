@@ -0,0 +1,200 @@
+package ru.alexbykov.nopermission;
+
+import android.app.Activity;
+import android.app.Application;
+import android.support.v4.app.Fragment;
+
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Checks, that host return after own system dialog doesn't invalidate state, and return from outside does.
+ * Lifecycle events are delivered through callbacks, registered in application, as system does
+ */
+public class HostLifecycleObserverTest {
+
+
+    private static final int GC_ATTEMPTS = 20;
+    private final HostApplication application = new HostApplication();
+    private final Activity host = new Activity();
+    private final Fragment fragmentHost = new Fragment();
+    private int returnsCount;
+    private int destroysCount;
+    private final HostLifecycleObserver.Listener listener = new HostLifecycleObserver.Listener() {
+        @Override
+        public void onHostReturned() {
+            returnsCount++;
+        }
+
+        @Override
+        public void onHostDestroyed() {
+            destroysCount++;
+        }
+    };
+    private final HostLifecycleObserver observer = new HostLifecycleObserver(application, host, null, listener);
+
+
+    @Test
+    public void onActivityResumed_afterPause_returns() {
+        observer.register();
+        pauseAndResume(false);
+        assertEquals(1, returnsCount);
+    }
+
+
+    @Test
+    public void onActivityResumed_afterRequest_doesNotReturn() {
+        observer.register();
+        HostLifecycleObserver.onRequestSent(host);
+        pauseAndResume(false);
+        assertEquals(0, returnsCount);
+        pauseAndResume(false);
+        assertEquals(1, returnsCount);
+    }
+
+
+    @Test
+    public void onActivityResumed_stoppedAfterRequest_returns() {
+        observer.register();
+        HostLifecycleObserver.onRequestSent(host);
+        pauseAndResume(true);
+        assertEquals(1, returnsCount);
+    }
+
+
+    @Test
+    public void onActivityResumed_requestOfOtherHost_returns() {
+        observer.register();
+        HostLifecycleObserver.onRequestSent(new Activity());
+        pauseAndResume(false);
+        assertEquals(1, returnsCount);
+    }
+
+
+    @Test
+    public void onActivityDestroyed_unregistersAndNotifiesOnce() {
+        observer.register();
+        assertEquals(1, application.callbacks.size());
+        application.destroy(new Activity());
+        assertEquals(0, destroysCount);
+
+        application.destroy(host);
+        assertEquals(0, application.callbacks.size());
+        assertEquals(1, destroysCount);
+        observer.fragmentCallbacks.onFragmentDestroyed(null, fragmentHost);
+        assertEquals(1, destroysCount);
+    }
+
+
+    @Test
+    public void onFragmentDestroyed_activityAlive_unregistersAndNotifiesOnce() {
+        final HostLifecycleObserver fragmentObserver = new HostLifecycleObserver(application, host, fragmentHost, listener);
+        fragmentObserver.register();
+        fragmentObserver.fragmentCallbacks.onFragmentDestroyed(null, new Fragment());
+        assertEquals(0, destroysCount);
+        assertEquals(1, application.callbacks.size());
+
+        fragmentObserver.fragmentCallbacks.onFragmentDestroyed(null, fragmentHost);
+        assertEquals(1, destroysCount);
+        assertEquals(0, application.callbacks.size());
+        application.destroy(host);
+        assertEquals(1, destroysCount);
+    }
+
+
+    @Test
+    public void onFragmentDestroyed_severalFragmentsOfActivity_releasesOnlyObserverOfDestroyedOne() {
+        final Fragment otherFragmentHost = new Fragment();
+        new HostLifecycleObserver(application, host, fragmentHost, listener).register();
+        final HostLifecycleObserver otherObserver = new HostLifecycleObserver(application, host, otherFragmentHost, listener);
+        otherObserver.register();
+
+        otherObserver.fragmentCallbacks.onFragmentDestroyed(null, otherFragmentHost);
+        assertEquals(1, destroysCount);
+        assertEquals(1, application.callbacks.size());
+        pauseAndResume(false);
+        assertEquals(1, returnsCount);
+    }
+
+
+    @Test
+    public void register_doesNotKeepHosts() throws Exception {
+        final List<WeakReference<Object>> hosts = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            final Activity activity = new Activity();
+            final Fragment fragment = new Fragment();
+            hosts.add(new WeakReference<Object>(activity));
+            hosts.add(new WeakReference<Object>(fragment));
+            new HostLifecycleObserver(application, activity, fragment, listener).register();
+        }
+        for (int attempt = 0; attempt < GC_ATTEMPTS; attempt++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        for (WeakReference<Object> hostReference : hosts) {
+            assertNull(hostReference.get());
+        }
+    }
+
+
+    private void pauseAndResume(boolean stop) {
+        application.pause(host);
+        if (stop) {
+            application.stop(host);
+        }
+        application.resume(host);
+    }
+
+
+    /**
+     * Application, which delivers activity lifecycle events to registered callbacks
+     */
+    private static final class HostApplication extends Application {
+
+        final List<ActivityLifecycleCallbacks> callbacks = new ArrayList<>();
+
+        @Override
+        public void registerActivityLifecycleCallbacks(ActivityLifecycleCallbacks callback) {
+            callbacks.add(callback);
+        }
+
+        @Override
+        public void unregisterActivityLifecycleCallbacks(ActivityLifecycleCallbacks callback) {
+            callbacks.remove(callback);
+        }
+
+        void pause(Activity activity) {
+            for (ActivityLifecycleCallbacks callback : currentCallbacks()) {
+                callback.onActivityPaused(activity);
+            }
+        }
+
+        void stop(Activity activity) {
+            for (ActivityLifecycleCallbacks callback : currentCallbacks()) {
+                callback.onActivityStopped(activity);
+            }
+        }
+
+        void resume(Activity activity) {
+            for (ActivityLifecycleCallbacks callback : currentCallbacks()) {
+                callback.onActivityResumed(activity);
+            }
+        }
+
+        void destroy(Activity activity) {
+            for (ActivityLifecycleCallbacks callback : currentCallbacks()) {
+                callback.onActivityDestroyed(activity);
+            }
+        }
+
+        private ActivityLifecycleCallbacks[] currentCallbacks() {
+            return callbacks.toArray(new ActivityLifecycleCallbacks[callbacks.size()]);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package ru.alexbykov.nopermission;
+
+import android.app.Activity;
+
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks, that destroyed activities are not kept by helpers and by components, which outlive them:
+ * headless fragment, scheduler and helper itself
+ */
+public class HostRetentionTest {
+
+
+    private static final String CAMERA = "android.permission.CAMERA";
+    private static final String LOCATION = "android.permission.ACCESS_FINE_LOCATION";
+    private static final int CYCLES = 50;
+    private static final int GC_ATTEMPTS = 20;
+    private static final int TITLE = 1;
+    private static final int MESSAGE = 2;
+    private static final int BUTTON = 3;
+
+
+    @Test
+    public void onHostDestroyed_requestsInFlight_releasesActivity() throws Exception {
+        final PermissionRequestScheduler scheduler = new PermissionRequestScheduler();
+        final List<PermissionResultFragment> resultFragments = new ArrayList<>();
+        final List<WeakReference<Activity>> activities = new ArrayList<>();
+        for (int i = 0; i < CYCLES; i++) {
+            final Activity activity = new Activity();
+            activities.add(new WeakReference<>(activity));
+            final PermissionResultFragment resultFragment = new PermissionResultFragment();
+            resultFragments.add(resultFragment);
+            final PermissionHelper attachedHelper = new PermissionHelper(new FakePermissionBackend())
+                    .bindResultFragment(resultFragment);
+            final PermissionHelper scheduledHelper = new PermissionHelper(new FakePermissionBackend())
+                    .setRequestScheduler(scheduler);
+            attachedHelper.check(CAMERA)
+                    .onSuccess(new ActivityListener(activity))
+                    .onDenied(new ActivityListener(activity))
+                    .run();
+            scheduledHelper.check(CAMERA)
+                    .onSuccess(new ActivityListener(activity))
+                    .onDenied(new ActivityListener(activity))
+                    .run();
+            attachedHelper.onHostDestroyed();
+            scheduledHelper.onHostDestroyed();
+        }
+        assertEquals(0, countRetained(activities));
+        for (PermissionResultFragment resultFragment : resultFragments) {
+            assertEquals(PermissionResultFragment.STAGE_SYSTEM_REQUEST, resultFragment.getStage());
+        }
+    }
+
+
+    @Test
+    public void onHostDestroyed_dialogShowing_releasesActivity() throws Exception {
+        final List<PermissionHelper> helpers = new ArrayList<>();
+        final List<WeakReference<Activity>> activities = new ArrayList<>();
+        for (int i = 0; i < CYCLES; i++) {
+            final Activity activity = new Activity();
+            activities.add(new WeakReference<>(activity));
+            final DialogPermissionHelper permissionHelper = new DialogPermissionHelper(new FakePermissionBackend().withContext(activity));
+            permissionHelper.bindResultFragment(new PermissionResultFragment())
+                    .check(CAMERA)
+                    .withDialogBeforeRun(TITLE, MESSAGE, BUTTON)
+                    .onSuccess(new ActivityListener(activity))
+                    .onDenied(new ActivityListener(activity))
+                    .run();
+            assertTrue(permissionHelper.dialog.isShowing());
+            permissionHelper.onHostDestroyed();
+            assertFalse(permissionHelper.dialog.isShowing());
+            permissionHelper.dialog = null;
+            helpers.add(permissionHelper);
+        }
+        assertEquals(0, countRetained(activities));
+        assertEquals(CYCLES, helpers.size());
+    }
+
+
+    @Test
+    public void bindResultFragment_afterRecreation_continuesRequestWithNewActivity() throws Exception {
+        final PermissionResultFragment resultFragment = new PermissionResultFragment();
+        final List<WeakReference<Activity>> activities = new ArrayList<>();
+        final CountingCallbacks callbacks = new CountingCallbacks();
+        FakePermissionBackend host = null;
+        DialogPermissionHelper permissionHelper = null;
+        for (int i = 0; i < CYCLES; i++) {
+            final Activity activity = new Activity();
+            activities.add(new WeakReference<>(activity));
+            host = new FakePermissionBackend().withContext(activity);
+            permissionHelper = new DialogPermissionHelper(host);
+            permissionHelper.bindResultFragment(resultFragment);
+            assertEquals(i > 0, permissionHelper.hasPendingRequest());
+            permissionHelper.check(CAMERA)
+                    .withDialogBeforeRun(TITLE, MESSAGE, BUTTON)
+                    .onSuccess(callbacks.success)
+                    .onDenied(new ActivityListener(activity))
+                    .run();
+            assertTrue(permissionHelper.dialog.isShowing());
+            assertEquals(activity, permissionHelper.dialog.host);
+            assertEquals(0, host.requestsCount);
+            if (i < CYCLES - 1) {
+                permissionHelper.onHostDestroyed();
+            }
+        }
+        assertEquals(PermissionResultFragment.STAGE_DIALOG, resultFragment.getStage());
+        assertEquals(0, countRetained(activities.subList(0, CYCLES - 1)));
+
+        permissionHelper.dialog.clickPositiveButton();
+        assertEquals(1, host.requestsCount);
+        assertEquals(PermissionResultFragment.STAGE_SYSTEM_REQUEST, resultFragment.getStage());
+        resultFragment.onRequestPermissionsResult(host.requestCode, host.requestedPermissions, new int[]{0});
+        assertEquals(1, callbacks.successCount);
+        assertEquals(PermissionResultFragment.STAGE_NONE, resultFragment.getStage());
+    }
+
+
+    @Test
+    public void run_secondDialogBeforeRun_finishesFirstRequestAsDenied() {
+        final Activity activity = new Activity();
+        final FakePermissionBackend host = new FakePermissionBackend().withContext(activity);
+        final DialogPermissionHelper permissionHelper = new DialogPermissionHelper(host);
+        final CountingCallbacks callbacks = new CountingCallbacks();
+        permissionHelper.check(CAMERA)
+                .withDialogBeforeRun(TITLE, MESSAGE, BUTTON)
+                .onSuccess(new ActivityListener(activity))
+                .onDenied(callbacks.denied)
+                .run();
+        permissionHelper.check(LOCATION)
+                .withDialogBeforeRun(TITLE, MESSAGE, BUTTON)
+                .onSuccess(new ActivityListener(activity))
+                .onDenied(callbacks.denied)
+                .run();
+        assertEquals(1, callbacks.deniedCount);
+
+        permissionHelper.dialog.clickPositiveButton();
+        assertEquals(1, host.requestsCount);
+        assertEquals(LOCATION, host.requestedPermissions[0]);
+        permissionHelper.onRequestPermissionsResult(host.requestCode, host.requestedPermissions, new int[]{-1});
+        assertEquals(2, callbacks.deniedCount);
+    }
+
+
+    @Test
+    public void helperOutlivesActivity_doesNotKeepIt() throws Exception {
+        final List<PermissionHelper> helpers = new ArrayList<>();
+        final List<WeakReference<Activity>> activities = new ArrayList<>();
+        for (int i = 0; i < CYCLES; i++) {
+            final Activity activity = new Activity();
+            activities.add(new WeakReference<>(activity));
+            helpers.add(new PermissionHelper(activity));
+        }
+        assertEquals(0, countRetained(activities));
+        assertEquals(CYCLES, helpers.size());
+    }
+
+
+    private static int countRetained(List<WeakReference<Activity>> activities) throws InterruptedException {
+        int retained = activities.size();
+        for (int attempt = 0; attempt < GC_ATTEMPTS && retained > 0; attempt++) {
+            System.gc();
+            Thread.sleep(10);
+            retained = 0;
+            for (WeakReference<Activity> activity : activities) {
+                if (activity.get() != null) {
+                    retained++;
+                }
+            }
+        }
+        return retained;
+    }
+
+
+    /**
+     * Listener, which captures activity, as lambdas in real code do
+     */
+    private static final class ActivityListener implements Runnable {
+
+        private final Activity activity;
+
+        ActivityListener(Activity activity) {
+            this.activity = activity;
+        }
+
+        @Override
+        public void run() {
+            activity.toString();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package ru.alexbykov.nopermission;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks, that values are counted in buckets by their upper bounds
+ */
+public class LatencyHistogramTest {
+
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+
+    @Test
+    public void record_valueOnBound_countedInBucketOfBound() {
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(1));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(2));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(3));
+        assertEquals(1, histogram.getCount(0));
+        assertEquals(1, histogram.getCount(1));
+        assertEquals(1, histogram.getCount(2));
+        assertEquals(5, histogram.getBucketBoundMillis(2));
+    }
+
+
+    @Test
+    public void record_valueAboveLastBound_countedInLastBucket() {
+        final int lastBucket = histogram.getBucketCount() - 1;
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(histogram.getBucketBoundMillis(lastBucket - 1) + 1));
+        assertEquals(1, histogram.getCount(lastBucket));
+        assertEquals(Long.MAX_VALUE, histogram.getBucketBoundMillis(lastBucket));
+    }
+
+
+    @Test
+    public void record_severalValues_sumsCountAndNanos() {
+        histogram.record(0);
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(500));
+        histogram.record(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(3, histogram.getTotalCount());
+        assertEquals(2, histogram.getCount(0));
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(1000500), histogram.getTotalNanos());
+    }
+}
@@ -0,0 +1,61 @@
+package ru.alexbykov.nopermission;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks, that groups of API level are used to skip redundant checks
+ */
+public class PermissionGroupsTest {
+
+
+    private static final String FINE_LOCATION = "android.permission.ACCESS_FINE_LOCATION";
+    private static final String COARSE_LOCATION = "android.permission.ACCESS_COARSE_LOCATION";
+    private static final String CAMERA = "android.permission.CAMERA";
+
+    private final CountingCallbacks callbacks = new CountingCallbacks();
+
+
+    @Test
+    public void forApiLevel_groupsOnlyWhereGuaranteed() {
+        assertEquals(PermissionSet.of(FINE_LOCATION, COARSE_LOCATION),
+                PermissionGroups.forApiLevel(23).getGrantedTogether(FINE_LOCATION));
+        assertTrue(PermissionGroups.forApiLevel(26).getGrantedTogether(FINE_LOCATION).isEmpty());
+        assertEquals(PermissionSet.of(FINE_LOCATION, COARSE_LOCATION),
+                PermissionGroups.forApiLevel(28).getRationaleGroup(COARSE_LOCATION));
+        assertTrue(PermissionGroups.forApiLevel(29).getRationaleGroup(COARSE_LOCATION).isEmpty());
+        assertTrue(PermissionGroups.forApiLevel(23).getRationaleGroup(CAMERA).isEmpty());
+    }
+
+
+    @Test
+    public void run_groupGrantedTogether_checksOncePerGroup() {
+        final FakePermissionBackend host = new FakePermissionBackend().grant(FINE_LOCATION, COARSE_LOCATION);
+        final PermissionHelper permissionHelper = new PermissionHelper(host);
+        permissionHelper.setPermissionGroups(PermissionGroups.forApiLevel(23));
+        permissionHelper.check(FINE_LOCATION, COARSE_LOCATION, CAMERA)
+                .onSuccess(callbacks.success)
+                .onDenied(callbacks.denied)
+                .run();
+        assertEquals(2, host.checksCount);
+        assertArrayEquals(new String[]{CAMERA}, host.requestedPermissions);
+    }
+
+
+    @Test
+    public void run_groupNotGranted_requestsEveryPermissionOfGroup() {
+        final FakePermissionBackend host = new FakePermissionBackend();
+        final PermissionHelper permissionHelper = new PermissionHelper(host);
+        permissionHelper.setPermissionGroups(PermissionGroups.forApiLevel(23));
+        permissionHelper.check(FINE_LOCATION, COARSE_LOCATION)
+                .onSuccess(callbacks.success)
+                .onDenied(callbacks.denied)
+                .run();
+        assertArrayEquals(new String[]{FINE_LOCATION, COARSE_LOCATION}, host.requestedPermissions);
+        permissionHelper.onRequestPermissionsResult(host.requestCode, host.requestedPermissions, new int[]{0, 0});
+        assertEquals(1, callbacks.successCount);
+    }
+}
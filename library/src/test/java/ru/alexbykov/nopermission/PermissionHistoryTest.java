@@ -0,0 +1,140 @@
+package ru.alexbykov.nopermission;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks, that history survives restart and that known "never ask again" doesn't need system dialog
+ */
+public class PermissionHistoryTest {
+
+
+    private static final String CAMERA = "android.permission.CAMERA";
+    private static final String LOCATION = "android.permission.ACCESS_FINE_LOCATION";
+    private static final long NO_DELAY = 0;
+
+    private File file;
+    private final CountingCallbacks callbacks = new CountingCallbacks();
+
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("nopermission_history", null);
+        file.delete();
+    }
+
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+
+    @Test
+    public void load_afterWrite_restoresHistory() throws Exception {
+        final PermissionHistory history = new PermissionHistory(file, NO_DELAY);
+        history.loading.get();
+        assertTrue(history.isNeverAsked(CAMERA));
+        history.recordAsked(new String[]{CAMERA, LOCATION});
+        history.recordNeverAskAgain(CAMERA, true);
+        history.recordGranted(LOCATION);
+        history.flush().get();
+
+        final PermissionHistory restoredHistory = new PermissionHistory(file, NO_DELAY);
+        restoredHistory.loading.get();
+        assertTrue(restoredHistory.isNeverAskAgain(CAMERA));
+        assertFalse(restoredHistory.isNeverAskAgain(LOCATION));
+        assertFalse(restoredHistory.isNeverAsked(LOCATION));
+    }
+
+
+    @Test
+    public void run_knownNeverAskAgain_doesNotAskSystem() throws Exception {
+        final PermissionHistory history = new PermissionHistory(file, NO_DELAY);
+        history.loading.get();
+        history.recordNeverAskAgain(CAMERA, true);
+        final FakePermissionBackend host = new FakePermissionBackend();
+        final PermissionHelper permissionHelper = new PermissionHelper(host).setHistory(history);
+        permissionHelper.check(CAMERA)
+                .onSuccess(callbacks.success)
+                .onDenied(callbacks.denied)
+                .onNeverAskAgain(callbacks.neverAskAgain)
+                .run();
+        assertEquals(1, callbacks.neverAskAgainCount);
+        assertEquals(0, host.requestsCount);
+    }
+
+
+    @Test
+    public void run_oneOfPermissionsKnownNeverAskAgain_asksOthersAndMergesResult() throws Exception {
+        final PermissionHistory history = new PermissionHistory(file, NO_DELAY);
+        history.loading.get();
+        history.recordNeverAskAgain(CAMERA, true);
+        final FakePermissionBackend host = new FakePermissionBackend().neverAskAgain(CAMERA);
+        final PermissionHelper permissionHelper = new PermissionHelper(host).setHistory(history);
+        final PermissionResult[] result = new PermissionResult[1];
+        permissionHelper.check(CAMERA, LOCATION)
+                .onSuccess(callbacks.success)
+                .onDenied(callbacks.denied)
+                .onNeverAskAgain(callbacks.neverAskAgain)
+                .onResult(new PermissionResultListener() {
+                    @Override
+                    public void onResult(PermissionResult permissionResult) {
+                        result[0] = permissionResult;
+                    }
+                })
+                .run();
+        assertEquals(1, host.requestsCount);
+        assertArrayEquals(new String[]{LOCATION}, host.requestedPermissions);
+        assertEquals(0, callbacks.neverAskAgainCount);
+
+        permissionHelper.onRequestPermissionsResult(host.requestCode, host.requestedPermissions, new int[]{0});
+        assertEquals(1, callbacks.neverAskAgainCount);
+        assertEquals(PermissionSet.of(LOCATION), result[0].getGranted());
+        assertEquals(PermissionSet.EMPTY, result[0].getDenied());
+        assertEquals(PermissionSet.of(CAMERA), result[0].getNeverAskAgain());
+    }
+
+
+    @Test
+    public void run_grantedAfterNeverAskAgain_forgetsIt() throws Exception {
+        final PermissionHistory history = new PermissionHistory(file, NO_DELAY);
+        history.loading.get();
+        history.recordNeverAskAgain(CAMERA, true);
+        final PermissionHelper permissionHelper = new PermissionHelper(new FakePermissionBackend().grant(CAMERA)).setHistory(history);
+        permissionHelper.check(CAMERA)
+                .onSuccess(callbacks.success)
+                .onDenied(callbacks.denied)
+                .onNeverAskAgain(callbacks.neverAskAgain)
+                .run();
+        assertEquals(0, callbacks.neverAskAgainCount);
+        assertFalse(history.isNeverAskAgain(CAMERA));
+    }
+
+
+    @Test
+    public void run_afterInvalidation_asksSystemAgain() throws Exception {
+        final PermissionHistory history = new PermissionHistory(file, NO_DELAY);
+        history.loading.get();
+        history.recordNeverAskAgain(CAMERA, true);
+        final FakePermissionBackend host = new FakePermissionBackend();
+        final PermissionHelper permissionHelper = new PermissionHelper(host).setHistory(history);
+        permissionHelper.invalidateCache();
+        permissionHelper.check(CAMERA)
+                .onSuccess(callbacks.success)
+                .onDenied(callbacks.denied)
+                .onNeverAskAgain(callbacks.neverAskAgain)
+                .run();
+        assertEquals(0, callbacks.neverAskAgainCount);
+        assertEquals(1, host.requestsCount);
+        assertFalse(history.isNeverAskAgain(CAMERA));
+    }
+}
@@ -0,0 +1,111 @@
+package ru.alexbykov.nopermission;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks, that every permission flow is recorded, and latency is measured from the start of run
+ */
+public class PermissionMetricsTest {
+
+
+    private static final String CAMERA = "android.permission.CAMERA";
+    private static final String LOCATION = "android.permission.ACCESS_FINE_LOCATION";
+    private static final long CHECK_MILLIS = 20;
+    private static final int DENIED = -1;
+
+    private final PermissionMetrics metrics = new PermissionMetrics();
+    private final CountingCallbacks callbacks = new CountingCallbacks();
+
+
+    @Test
+    public void run_allGranted_recordsSuccessWithoutRequest() {
+        final PermissionHelper permissionHelper = new PermissionHelper(new FakePermissionBackend().grant(CAMERA, LOCATION))
+                .setMetrics(metrics);
+        run(permissionHelper.check(CAMERA, LOCATION));
+        for (String permission : new String[]{CAMERA, LOCATION}) {
+            final PermissionFlowStats stats = metrics.getStats(permission);
+            assertEquals(1, stats.getResultLatency(PermissionMetrics.OUTCOME_SUCCESS).getTotalCount());
+            assertEquals(0, stats.getRequestLatency().getTotalCount());
+        }
+    }
+
+
+    @Test
+    public void run_knownNeverAskAgain_recordsNeverAskAgainWithoutRequest() throws Exception {
+        final File file = File.createTempFile("nopermission_history", null);
+        file.delete();
+        try {
+            final PermissionHistory history = new PermissionHistory(file, 0);
+            history.loading.get();
+            history.recordNeverAskAgain(CAMERA, true);
+            final PermissionHelper permissionHelper = new PermissionHelper(new FakePermissionBackend())
+                    .setHistory(history)
+                    .setMetrics(metrics);
+            run(permissionHelper.check(CAMERA).onNeverAskAgain(callbacks.neverAskAgain));
+            final PermissionFlowStats stats = metrics.getStats(CAMERA);
+            assertEquals(1, stats.getResultLatency(PermissionMetrics.OUTCOME_NEVER_ASK_AGAIN).getTotalCount());
+            assertEquals(0, stats.getRequestLatency().getTotalCount());
+        } finally {
+            file.delete();
+        }
+    }
+
+
+    @Test
+    public void run_systemRequest_latencyIncludesPermissionCheck() {
+        final SlowPermissionBackend host = new SlowPermissionBackend();
+        final PermissionHelper permissionHelper = new PermissionHelper(host).setMetrics(metrics);
+        run(permissionHelper.check(CAMERA));
+        permissionHelper.onRequestPermissionsResult(host.requestCode, host.requestedPermissions, new int[]{DENIED});
+
+        final PermissionFlowStats stats = metrics.getStats(CAMERA);
+        assertEquals(CAMERA, stats.getPermission());
+        assertEquals(1, stats.getRequestLatency().getTotalCount());
+        assertTrue(stats.getRequestLatency().getTotalNanos() >= TimeUnit.MILLISECONDS.toNanos(CHECK_MILLIS));
+        final LatencyHistogram deniedLatency = stats.getResultLatency(PermissionMetrics.OUTCOME_DENIED);
+        assertEquals(1, deniedLatency.getTotalCount());
+        assertTrue(deniedLatency.getTotalNanos() >= TimeUnit.MILLISECONDS.toNanos(CHECK_MILLIS));
+        assertEquals(0, stats.getResultLatency(PermissionMetrics.OUTCOME_SUCCESS).getTotalCount());
+        assertEquals(0, stats.getResultLatency(PermissionMetrics.OUTCOME_NEVER_ASK_AGAIN).getTotalCount());
+    }
+
+
+    @Test
+    public void getStats_notRecordedPermission_returnsNull() {
+        metrics.recordResult(CAMERA, PermissionMetrics.OUTCOME_SUCCESS, 0);
+        assertNull(metrics.getStats(LOCATION));
+        assertEquals(1, metrics.getPermissions().size());
+        assertTrue(metrics.getPermissions().contains(CAMERA));
+    }
+
+
+    private void run(PermissionHelper permissionHelper) {
+        permissionHelper.onSuccess(callbacks.success)
+                .onDenied(callbacks.denied)
+                .run();
+    }
+
+
+    /**
+     * Backend, which spends time on each check, as binder call does
+     */
+    private static final class SlowPermissionBackend extends FakePermissionBackend {
+
+        @Override
+        public boolean isGranted(String permission) {
+            try {
+                Thread.sleep(CHECK_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.isGranted(permission);
+        }
+    }
+}
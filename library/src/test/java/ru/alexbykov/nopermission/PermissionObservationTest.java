@@ -0,0 +1,75 @@
+package ru.alexbykov.nopermission;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks, that result of request of the same helper is delivered to observations without checking permissions again
+ */
+public class PermissionObservationTest {
+
+
+    private static final String CAMERA = "android.permission.CAMERA";
+    private static final String LOCATION = "android.permission.ACCESS_FINE_LOCATION";
+    private static final int GRANTED = 0;
+    private static final int DENIED = -1;
+
+    private final FakePermissionBackend host = new FakePermissionBackend();
+    private final PermissionHelper permissionHelper = new PermissionHelper(host);
+    private final CountingCallbacks callbacks = new CountingCallbacks();
+    private int changesCount;
+    private PermissionSet granted;
+    private PermissionSet revoked;
+    private final PermissionChangeListener listener = new PermissionChangeListener() {
+        @Override
+        public void onPermissionsChanged(PermissionSet granted, PermissionSet revoked) {
+            changesCount++;
+            PermissionObservationTest.this.granted = granted;
+            PermissionObservationTest.this.revoked = revoked;
+        }
+    };
+
+
+    @Test
+    public void onRequestPermissionsResult_granted_notifiesObservation() {
+        permissionHelper.observe(listener, CAMERA, LOCATION);
+        run(CAMERA);
+        final int checksCount = host.checksCount;
+        permissionHelper.onRequestPermissionsResult(host.requestCode, host.requestedPermissions, new int[]{GRANTED});
+        assertEquals(1, callbacks.successCount);
+        assertEquals(1, changesCount);
+        assertEquals(PermissionSet.of(CAMERA), granted);
+        assertEquals(PermissionSet.EMPTY, revoked);
+        assertEquals(checksCount, host.checksCount);
+    }
+
+
+    @Test
+    public void onRequestPermissionsResult_notChanged_keepsUncheckedPermissions() {
+        permissionHelper.observe(listener, CAMERA, LOCATION);
+        host.grant(LOCATION);
+        run(CAMERA);
+        permissionHelper.onRequestPermissionsResult(host.requestCode, host.requestedPermissions, new int[]{DENIED});
+        assertEquals(1, callbacks.deniedCount);
+        assertEquals(0, changesCount);
+    }
+
+
+    @Test
+    public void onRequestPermissionsResult_stoppedObserving_doesNotNotify() {
+        permissionHelper.observe(listener, CAMERA);
+        permissionHelper.stopObserving(listener);
+        run(CAMERA);
+        permissionHelper.onRequestPermissionsResult(host.requestCode, host.requestedPermissions, new int[]{GRANTED});
+        assertEquals(0, changesCount);
+    }
+
+
+    private void run(String permission) {
+        permissionHelper.check(permission)
+                .onSuccess(callbacks.success)
+                .onDenied(callbacks.denied)
+                .run();
+    }
+}
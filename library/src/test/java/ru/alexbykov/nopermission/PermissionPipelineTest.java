@@ -0,0 +1,94 @@
+package ru.alexbykov.nopermission;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks, that stages of pipeline are asked one after another without redundant checks
+ */
+public class PermissionPipelineTest {
+
+
+    private static final String FINE_LOCATION = "android.permission.ACCESS_FINE_LOCATION";
+    private static final String BACKGROUND_LOCATION = "android.permission.ACCESS_BACKGROUND_LOCATION";
+    private static final String CAMERA = "android.permission.CAMERA";
+    private static final String RECORD_AUDIO = "android.permission.RECORD_AUDIO";
+    private static final PermissionPipeline LOCATION_PIPELINE = new PermissionPipeline.Builder()
+            .then(FINE_LOCATION)
+            .then(BACKGROUND_LOCATION)
+            .build();
+    private static final PermissionPipeline CAMERA_PIPELINE = new PermissionPipeline.Builder()
+            .then(CAMERA)
+            .then(RECORD_AUDIO)
+            .build();
+
+
+    @Test(expected = RuntimeException.class)
+    public void build_withoutStages_throws() {
+        new PermissionPipeline.Builder().build();
+    }
+
+
+    @Test
+    public void run_grantedStage_skipped() {
+        final FakePermissionBackend host = new FakePermissionBackend().grant(FINE_LOCATION);
+        final PermissionFuture future = new PermissionHelper(host).run(LOCATION_PIPELINE);
+        assertEquals(2, host.checksCount);
+        assertEquals(1, host.requestsCount);
+        assertArrayEquals(new String[]{BACKGROUND_LOCATION}, host.requestedPermissions);
+        assertFalse(future.isDone());
+    }
+
+
+    @Test
+    public void run_stagesGranted_askedOneAfterAnother() {
+        final FakePermissionBackend host = new FakePermissionBackend();
+        final PermissionHelper permissionHelper = new PermissionHelper(host);
+        final PermissionFuture future = permissionHelper.run(LOCATION_PIPELINE);
+        assertArrayEquals(new String[]{FINE_LOCATION}, host.requestedPermissions);
+        permissionHelper.onRequestPermissionsResult(host.requestCode, host.requestedPermissions, new int[]{0});
+        assertArrayEquals(new String[]{BACKGROUND_LOCATION}, host.requestedPermissions);
+        permissionHelper.onRequestPermissionsResult(host.requestCode, host.requestedPermissions, new int[]{0});
+        assertEquals(2, host.checksCount);
+        assertEquals(2, host.requestsCount);
+        assertTrue(future.isDone());
+        assertTrue(future.getResult().isAllGranted());
+        assertEquals(PermissionSet.of(FINE_LOCATION, BACKGROUND_LOCATION), future.getResult().getGranted());
+    }
+
+
+    @Test
+    public void run_stageDenied_stopsPipeline() {
+        final FakePermissionBackend host = new FakePermissionBackend();
+        final PermissionHelper permissionHelper = new PermissionHelper(host);
+        final PermissionFuture future = permissionHelper.run(LOCATION_PIPELINE);
+        permissionHelper.onRequestPermissionsResult(host.requestCode, host.requestedPermissions, new int[]{-1});
+        assertEquals(1, host.requestsCount);
+        assertTrue(future.isDone());
+        assertEquals(PermissionSet.of(FINE_LOCATION, BACKGROUND_LOCATION), future.getResult().getDenied());
+        assertTrue(future.getResult().getGranted().isEmpty());
+    }
+
+
+    @Test
+    public void then_allGranted_completesWithoutRequests() {
+        final FakePermissionBackend host = new FakePermissionBackend()
+                .grant(FINE_LOCATION, BACKGROUND_LOCATION, CAMERA, RECORD_AUDIO);
+        final PermissionResult[] results = new PermissionResult[1];
+        new PermissionHelper(host).run(LOCATION_PIPELINE)
+                .then(CAMERA_PIPELINE)
+                .addListener(new PermissionResultListener() {
+                    @Override
+                    public void onResult(PermissionResult result) {
+                        results[0] = result;
+                    }
+                });
+        assertEquals(0, host.requestsCount);
+        assertEquals(4, host.checksCount);
+        assertEquals(PermissionSet.of(FINE_LOCATION, BACKGROUND_LOCATION, CAMERA, RECORD_AUDIO), results[0].getGranted());
+    }
+}
@@ -0,0 +1,105 @@
+package ru.alexbykov.nopermission;
+
+import android.app.Activity;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Checks, that requests of several helpers of one activity are merged into one system request,
+ * and its result is delivered to every helper
+ */
+public class PermissionRequestSchedulerTest {
+
+
+    private static final String CAMERA = "android.permission.CAMERA";
+    private static final String LOCATION = "android.permission.ACCESS_FINE_LOCATION";
+    private static final String CONTACTS = "android.permission.READ_CONTACTS";
+    private static final int GRANTED = 0;
+    private static final int DENIED = -1;
+
+    private final PermissionRequestScheduler scheduler = new PermissionRequestScheduler();
+    private final Activity activity = new Activity();
+    private final FakePermissionBackend host = new FakePermissionBackend().withContext(activity);
+    private final CountingCallbacks callbacks = new CountingCallbacks();
+
+
+    @Test
+    public void run_twoHelpersInSameMessage_oneSystemRequestWithResultForEach() {
+        final CountingCallbacks firstCallbacks = new CountingCallbacks();
+        final CountingCallbacks secondCallbacks = new CountingCallbacks();
+        final PermissionHelper first = new PermissionHelper(host).setRequestScheduler(scheduler);
+        final PermissionHelper second = new PermissionHelper(host).setRequestScheduler(scheduler);
+        first.check(CAMERA, LOCATION).onSuccess(firstCallbacks.success).onDenied(firstCallbacks.denied).run();
+        second.check(LOCATION, CONTACTS).onSuccess(secondCallbacks.success).onDenied(secondCallbacks.denied).run();
+        assertEquals(0, host.requestsCount);
+
+        scheduler.flush();
+        assertEquals(1, host.requestsCount);
+        assertArrayEquals(new String[]{CAMERA, LOCATION, CONTACTS}, host.requestedPermissions);
+
+        final int[] grantResults = {GRANTED, GRANTED, DENIED};
+        first.onRequestPermissionsResult(host.requestCode, host.requestedPermissions, grantResults);
+        second.onRequestPermissionsResult(host.requestCode, host.requestedPermissions, grantResults);
+        assertEquals(1, firstCallbacks.successCount);
+        assertEquals(0, firstCallbacks.deniedCount);
+        assertEquals(0, secondCallbacks.successCount);
+        assertEquals(1, secondCallbacks.deniedCount);
+    }
+
+
+    @Test
+    public void onRequestPermissionsResult_mergedRequestOfResultFragment_clearsStage() {
+        final PermissionResultFragment resultFragment = new PermissionResultFragment();
+        final PermissionHelper attachedHelper = new PermissionHelper(host)
+                .bindResultFragment(resultFragment)
+                .setRequestScheduler(scheduler);
+        final PermissionHelper otherHelper = new PermissionHelper(host).setRequestScheduler(scheduler);
+        run(attachedHelper, CAMERA);
+        run(otherHelper, LOCATION);
+        scheduler.flush();
+        assertEquals(1, host.requestsCount);
+        assertEquals(PermissionResultFragment.STAGE_SYSTEM_REQUEST, resultFragment.getStage());
+        assertEquals(host.requestCode, resultFragment.getRequestCode());
+
+        resultFragment.onRequestPermissionsResult(host.requestCode, host.requestedPermissions, new int[]{GRANTED, DENIED});
+        assertEquals(1, callbacks.successCount);
+        assertEquals(1, callbacks.deniedCount);
+        assertEquals(PermissionResultFragment.STAGE_NONE, resultFragment.getStage());
+        assertFalse(new PermissionHelper(host).bindResultFragment(resultFragment).hasPendingRequest());
+    }
+
+
+    @Test
+    public void onRequestPermissionsResult_mergedRequestRestoredAfterRecreation_deliveredOnce() {
+        final PermissionResultFragment resultFragment = new PermissionResultFragment();
+        final PermissionHelper attachedHelper = new PermissionHelper(host)
+                .bindResultFragment(resultFragment)
+                .setRequestScheduler(scheduler);
+        run(attachedHelper, CAMERA);
+        scheduler.flush();
+        attachedHelper.onHostDestroyed();
+        resultFragment.onRequestPermissionsResult(host.requestCode, host.requestedPermissions, new int[]{GRANTED});
+        assertEquals(PermissionResultFragment.STAGE_RESULT, resultFragment.getStage());
+
+        final PermissionHelper recreatedHelper = new PermissionHelper(host)
+                .bindResultFragment(resultFragment)
+                .setRequestScheduler(scheduler);
+        run(recreatedHelper, CAMERA);
+        assertEquals(1, callbacks.successCount);
+        assertEquals(1, host.requestsCount);
+        assertEquals(PermissionResultFragment.STAGE_NONE, resultFragment.getStage());
+        assertArrayEquals(new String[]{CAMERA}, host.requestedPermissions);
+    }
+
+
+    private void run(PermissionHelper permissionHelper, String permission) {
+        permissionHelper.check(permission)
+                .onSuccess(callbacks.success)
+                .onDenied(callbacks.denied)
+                .run();
+    }
+}
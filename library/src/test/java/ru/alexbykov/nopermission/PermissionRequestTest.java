@@ -0,0 +1,84 @@
+package ru.alexbykov.nopermission;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks, that immutable request can be run many times and by several helpers
+ */
+public class PermissionRequestTest {
+
+
+    private static final String CAMERA = "android.permission.CAMERA";
+    private static final String LOCATION = "android.permission.ACCESS_FINE_LOCATION";
+
+    private final CountingCallbacks callbacks = new CountingCallbacks();
+    private final PermissionRequest request = new PermissionRequest.Builder()
+            .check(CAMERA, LOCATION)
+            .onSuccess(callbacks.success)
+            .onDenied(callbacks.denied)
+            .build();
+
+
+    @Test(expected = RuntimeException.class)
+    public void build_withoutListeners_throws() {
+        new PermissionRequest.Builder().check(CAMERA).build();
+    }
+
+
+    @Test
+    public void run_severalPermissions_asksInCheckOrder() {
+        final String first = "test.permission.ORDER_FIRST";
+        final String second = "test.permission.ORDER_SECOND";
+        PermissionSet.of(second);
+        final FakePermissionBackend host = new FakePermissionBackend().grant(LOCATION);
+        new PermissionHelper(host).run(new PermissionRequest.Builder()
+                .check(first, LOCATION, second, first)
+                .onSuccess(callbacks.success)
+                .onDenied(callbacks.denied)
+                .build());
+        assertArrayEquals(new String[]{first, second}, host.requestedPermissions);
+        assertEquals(PermissionSet.of(first, second), PermissionSet.of(second, first));
+    }
+
+
+    @Test
+    public void run_afterResult_keepsListeners() {
+        final FakePermissionBackend host = new FakePermissionBackend().grant(CAMERA);
+        final PermissionHelper permissionHelper = new PermissionHelper(host);
+        for (int i = 0; i < 3; i++) {
+            permissionHelper.run(request);
+            assertEquals(i + 1, host.requestsCount);
+            assertEquals(1, host.requestedPermissions.length);
+            permissionHelper.onRequestPermissionsResult(host.requestCode, host.requestedPermissions, new int[]{-1});
+        }
+        assertEquals(3, callbacks.deniedCount);
+        assertEquals(0, callbacks.successCount);
+    }
+
+
+    @Test
+    public void check_spec_asksPreparedPermissions() {
+        final PermissionSpec spec = PermissionSpec.of(CAMERA, LOCATION);
+        final FakePermissionBackend host = new FakePermissionBackend().grant(LOCATION);
+        new PermissionHelper(host).run(new PermissionRequest.Builder()
+                .check(spec)
+                .onSuccess(callbacks.success)
+                .onDenied(callbacks.denied)
+                .build());
+        assertArrayEquals(new String[]{CAMERA}, host.requestedPermissions);
+    }
+
+
+    @Test
+    public void run_severalHelpers_sharesRequest() {
+        final PermissionHelper first = new PermissionHelper(new FakePermissionBackend().grant(CAMERA, LOCATION));
+        final PermissionHelper second = new PermissionHelper(new FakePermissionBackend().grant(CAMERA, LOCATION));
+        first.run(request);
+        second.run(request);
+        first.run(request);
+        assertEquals(3, callbacks.successCount);
+    }
+}
@@ -0,0 +1,131 @@
+package ru.alexbykov.nopermission;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks, that result contains state of each checked permission
+ */
+public class PermissionResultTest {
+
+
+    private static final String CAMERA = "android.permission.CAMERA";
+    private static final String CONTACTS = "android.permission.READ_CONTACTS";
+    private static final String WRITE_CONTACTS = "android.permission.WRITE_CONTACTS";
+    private static final String LOCATION = "android.permission.ACCESS_FINE_LOCATION";
+    private static final int DENIED = -1;
+
+    private PermissionResult result;
+    private int resultsCount;
+    private final PermissionResultListener resultListener = new PermissionResultListener() {
+        @Override
+        public void onResult(PermissionResult result) {
+            PermissionResultTest.this.result = result;
+            resultsCount++;
+        }
+    };
+
+
+    @Test
+    public void onRequestPermissionsResult_partiallyGranted_splitsPermissions() {
+        final FakePermissionBackend host = new FakePermissionBackend().grant(CAMERA).neverAskAgain(LOCATION);
+        final PermissionHelper permissionHelper = new PermissionHelper(host);
+        permissionHelper.check(CAMERA, CONTACTS, LOCATION)
+                .onResult(resultListener)
+                .run();
+        final int[] grantResults = new int[host.requestedPermissions.length];
+        for (int i = 0; i < grantResults.length; i++) {
+            grantResults[i] = host.requestedPermissions[i].equals(CONTACTS) ? 0 : DENIED;
+        }
+        permissionHelper.onRequestPermissionsResult(host.requestCode, host.requestedPermissions, grantResults);
+
+        assertEquals(1, resultsCount);
+        assertEquals(PermissionSet.of(CAMERA, CONTACTS), result.getGranted());
+        assertTrue(result.getDenied().isEmpty());
+        assertEquals(PermissionSet.of(LOCATION), result.getNeverAskAgain());
+    }
+
+
+    @Test
+    public void onRequestPermissionsResult_deniedGroup_checksRationaleOnce() {
+        final FakePermissionBackend host = new FakePermissionBackend();
+        final PermissionHelper permissionHelper = new PermissionHelper(host);
+        permissionHelper.setPermissionGroups(PermissionGroups.forApiLevel(28));
+        permissionHelper.check(CONTACTS, WRITE_CONTACTS)
+                .onResult(resultListener)
+                .run();
+        final int rationaleChecksBeforeResult = host.rationaleChecksCount;
+        permissionHelper.onRequestPermissionsResult(host.requestCode, host.requestedPermissions, new int[]{DENIED, DENIED});
+
+        assertEquals(1, host.rationaleChecksCount - rationaleChecksBeforeResult);
+        assertEquals(PermissionSet.of(CONTACTS, WRITE_CONTACTS), result.getDenied());
+        assertTrue(result.getGranted().isEmpty());
+    }
+
+
+    @Test
+    public void run_hostGone_finishesRequestAsDenied() {
+        final FakePermissionBackend host = new FakePermissionBackend().grant(CAMERA);
+        host.hostGone = true;
+        final PermissionHelper permissionHelper = new PermissionHelper(host);
+        final PermissionFuture future = permissionHelper.run(new PermissionPipeline.Builder()
+                .then(CAMERA, CONTACTS)
+                .build());
+
+        assertEquals(1, host.requestsCount);
+        assertTrue(future.isDone());
+        assertEquals(PermissionSet.of(CAMERA), future.getResult().getGranted());
+        assertEquals(PermissionSet.of(CONTACTS), future.getResult().getDenied());
+    }
+
+
+    @Test
+    public void onRequestPermissionsResult_withAndWithoutOnResult_runsSameCallback() {
+        assertDeniedOnly(runDeniedThenNeverAskAgain(false));
+        assertDeniedOnly(runDeniedThenNeverAskAgain(true));
+    }
+
+
+    private CountingCallbacks runDeniedThenNeverAskAgain(boolean withResultListener) {
+        final FakePermissionBackend host = new FakePermissionBackend().neverAskAgain(LOCATION);
+        final PermissionHelper permissionHelper = new PermissionHelper(host);
+        final CountingCallbacks callbacks = new CountingCallbacks();
+        permissionHelper.check(CONTACTS, LOCATION)
+                .onSuccess(callbacks.success)
+                .onDenied(callbacks.denied)
+                .onNeverAskAgain(callbacks.neverAskAgain);
+        if (withResultListener) {
+            permissionHelper.onResult(resultListener);
+        }
+        permissionHelper.run();
+        permissionHelper.onRequestPermissionsResult(host.requestCode, new String[]{CONTACTS, LOCATION}, new int[]{DENIED, DENIED});
+        return callbacks;
+    }
+
+
+    private static void assertDeniedOnly(CountingCallbacks callbacks) {
+        assertEquals(0, callbacks.successCount);
+        assertEquals(1, callbacks.deniedCount);
+        assertEquals(0, callbacks.neverAskAgainCount);
+    }
+
+
+    @Test
+    public void run_allGranted_deliversPrecomputedResult() {
+        final PermissionRequest request = new PermissionRequest.Builder()
+                .check(CAMERA)
+                .onResult(resultListener)
+                .build();
+        final PermissionHelper permissionHelper = new PermissionHelper(new FakePermissionBackend().grant(CAMERA));
+        permissionHelper.run(request);
+        final PermissionResult firstResult = result;
+        permissionHelper.run(request);
+
+        assertEquals(2, resultsCount);
+        assertSame(firstResult, result);
+        assertTrue(result.isAllGranted());
+    }
+}
@@ -0,0 +1,150 @@
+package ru.alexbykov.nopermission;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks set operations above and below 64 permissions, order of checked permissions and interning of permissions
+ */
+public class PermissionSetTest {
+
+
+    private static final String CAMERA = "android.permission.CAMERA";
+    private static final String LOCATION = "android.permission.ACCESS_FINE_LOCATION";
+    private static final String CONTACTS = "android.permission.READ_CONTACTS";
+    private static final int MANY_PERMISSIONS = 150;
+
+
+    @Test
+    public void of_moreThan64Permissions_containsEach() {
+        final String[] permissions = manyPermissions("of");
+        final PermissionSet set = PermissionSet.of(permissions);
+        assertEquals(MANY_PERMISSIONS, set.size());
+        for (String permission : permissions) {
+            assertTrue(set.contains(permission));
+        }
+        assertFalse(set.contains("ru.alexbykov.test.of.UNKNOWN"));
+        assertArrayEquals(permissions, set.toArray());
+    }
+
+
+    @Test
+    public void setOperations_moreThan64Permissions_useHighWords() {
+        final String[] permissions = manyPermissions("operations");
+        final PermissionSet first = PermissionSet.of(slice(permissions, 0, 100));
+        final PermissionSet second = PermissionSet.of(slice(permissions, 50, MANY_PERMISSIONS));
+
+        assertEquals(PermissionSet.of(permissions), first.union(second));
+        assertEquals(PermissionSet.of(slice(permissions, 50, 100)), first.intersect(second));
+        assertEquals(PermissionSet.of(slice(permissions, 0, 50)), first.minus(second));
+        assertEquals(PermissionSet.of(slice(permissions, 100, MANY_PERMISSIONS)), second.minus(first));
+        assertTrue(first.intersects(second));
+        assertFalse(first.minus(second).intersects(second));
+        assertTrue(first.union(second).containsAll(second));
+        assertFalse(first.containsAll(second));
+    }
+
+
+    @Test
+    public void minus_highPermissionsRemoved_equalsSetWithoutHighWords() {
+        final String[] permissions = manyPermissions("trim");
+        final PermissionSet low = PermissionSet.of(CAMERA);
+        final PermissionSet set = PermissionSet.of(permissions).union(low);
+        final PermissionSet withoutHigh = set.minus(PermissionSet.of(permissions));
+        assertEquals(low, withoutHigh);
+        assertEquals(low.hashCode(), withoutHigh.hashCode());
+    }
+
+
+    @Test
+    public void ordered_duplicates_keepsFirstOccurrenceOrder() {
+        final PermissionSet set = PermissionSet.ordered(LOCATION, CAMERA, LOCATION, CONTACTS);
+        assertArrayEquals(new String[]{LOCATION, CAMERA, CONTACTS}, set.toArray());
+        assertArrayEquals(new String[]{LOCATION, CONTACTS}, set.toArrayWithout(PermissionSet.of(CAMERA)));
+        assertArrayEquals(set.toArray(), set.toArrayWithout(PermissionSet.EMPTY));
+        assertEquals(0, set.toArrayWithout(set).length);
+    }
+
+
+    @Test
+    public void ordered_equalsSetInAnyOrder() {
+        final PermissionSet ordered = PermissionSet.ordered(LOCATION, CAMERA);
+        final PermissionSet plain = PermissionSet.of(CAMERA, LOCATION);
+        assertEquals(plain, ordered);
+        assertEquals(plain.hashCode(), ordered.hashCode());
+        assertArrayEquals(new String[]{CAMERA}, PermissionSet.ordered(CAMERA).toArray());
+    }
+
+
+    @Test
+    public void toArray_ordered_returnsCopy() {
+        final PermissionSet set = PermissionSet.ordered(LOCATION, CAMERA);
+        final String[] permissions = set.toArray();
+        permissions[0] = CONTACTS;
+        assertArrayEquals(new String[]{LOCATION, CAMERA}, set.toArray());
+    }
+
+
+    @Test
+    public void empty_operations_returnEmpty() {
+        final PermissionSet set = PermissionSet.of(CAMERA);
+        assertSame(PermissionSet.EMPTY, PermissionSet.of());
+        assertSame(PermissionSet.EMPTY, set.minus(set));
+        assertSame(PermissionSet.EMPTY, set.intersect(PermissionSet.of(LOCATION)));
+        assertTrue(PermissionSet.EMPTY.isEmpty());
+        assertEquals(0, PermissionSet.EMPTY.size());
+        assertEquals(0, PermissionSet.EMPTY.toArray().length);
+        assertTrue(set.containsAll(PermissionSet.EMPTY));
+        assertFalse(set.intersects(PermissionSet.EMPTY));
+    }
+
+
+    @Test
+    public void operations_resultEqualsOperand_returnOperand() {
+        final PermissionSet both = PermissionSet.of(CAMERA, LOCATION);
+        final PermissionSet camera = PermissionSet.of(CAMERA);
+        final PermissionSet contacts = PermissionSet.of(CONTACTS);
+        assertSame(both, both.union(camera));
+        assertSame(both, camera.union(both));
+        assertSame(camera, camera.intersect(both));
+        assertSame(both, both.minus(contacts));
+        assertNotSame(both, both.union(contacts));
+    }
+
+
+    @Test
+    public void registry_sameName_internedOnce() {
+        final String permission = "ru.alexbykov.test.registry.PERMISSION";
+        assertEquals(PermissionRegistry.NOT_REGISTERED, PermissionRegistry.find(permission));
+        assertFalse(PermissionSet.of(CAMERA).contains(permission));
+        assertEquals(PermissionRegistry.NOT_REGISTERED, PermissionRegistry.find(permission));
+
+        final int id = PermissionRegistry.idOf(permission);
+        assertEquals(id, PermissionRegistry.idOf(new String(permission)));
+        assertEquals(id, PermissionRegistry.find(new String(permission)));
+        assertEquals(permission, PermissionRegistry.nameOf(id));
+        assertTrue(PermissionSet.of(permission).containsId(id));
+    }
+
+
+    private static String[] manyPermissions(String prefix) {
+        final String[] permissions = new String[MANY_PERMISSIONS];
+        for (int i = 0; i < permissions.length; i++) {
+            permissions[i] = "ru.alexbykov.test." + prefix + ".PERMISSION_" + i;
+        }
+        return permissions;
+    }
+
+
+    private static String[] slice(String[] permissions, int from, int to) {
+        final String[] slice = new String[to - from];
+        System.arraycopy(permissions, from, slice, 0, slice.length);
+        return slice;
+    }
+}
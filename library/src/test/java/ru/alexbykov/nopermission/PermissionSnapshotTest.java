@@ -0,0 +1,64 @@
+package ru.alexbykov.nopermission;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks, that many permissions are read with one system call
+ */
+public class PermissionSnapshotTest {
+
+
+    private static final String CAMERA = "android.permission.CAMERA";
+    private static final String RECORD_AUDIO = "android.permission.RECORD_AUDIO";
+    private static final String READ_CONTACTS = "android.permission.READ_CONTACTS";
+    private static final String READ_CALENDAR = "android.permission.READ_CALENDAR";
+    private static final String SEND_SMS = "android.permission.SEND_SMS";
+
+    private final Runnable listener = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+
+    @Test
+    public void getSnapshot_readsAllPermissionsAtOnce() {
+        final SimulatedPermissionBackend backend = new SimulatedPermissionBackend().grant(CAMERA, SEND_SMS);
+        final PermissionSnapshot snapshot = backend.createHelper()
+                .getSnapshot(CAMERA, RECORD_AUDIO, READ_CONTACTS, READ_CALENDAR, SEND_SMS);
+        assertEquals(1, backend.getChecksCount());
+        assertTrue(snapshot.isGranted(CAMERA));
+        assertFalse(snapshot.isGranted(RECORD_AUDIO));
+        assertEquals(PermissionSet.of(RECORD_AUDIO, READ_CONTACTS, READ_CALENDAR), snapshot.getDenied());
+    }
+
+
+    @Test
+    public void run_manyPermissions_readsThemAtOnce() {
+        final SimulatedPermissionBackend backend = new SimulatedPermissionBackend()
+                .grant(CAMERA, SEND_SMS)
+                .setDefaultAnswer(SimulatedPermissionBackend.ANSWER_DENY);
+        final PermissionHelper permissionHelper = backend.createHelper();
+        permissionHelper.check(CAMERA, RECORD_AUDIO, READ_CONTACTS, READ_CALENDAR, SEND_SMS)
+                .onSuccess(listener)
+                .onDenied(listener)
+                .run();
+        assertEquals(1, backend.getRequestsCount());
+        assertEquals("one read of state and rationale check of each denied permission", 1 + 3, backend.getChecksCount());
+    }
+
+
+    @Test
+    public void getSnapshot_backendWithoutBulkRead_checksEachPermission() {
+        final FakePermissionBackend host = new FakePermissionBackend().grant(CAMERA);
+        final PermissionSnapshot snapshot = new PermissionHelper(host)
+                .getSnapshot(CAMERA, RECORD_AUDIO, READ_CONTACTS, READ_CALENDAR);
+        assertEquals(4, host.checksCount);
+        assertArrayEquals(new String[]{CAMERA}, snapshot.getGranted().toArray());
+    }
+}
@@ -0,0 +1,178 @@
+package ru.alexbykov.nopermission;
+
+import android.app.Activity;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks, that helpers share permissions state and concurrent lookups ask system once
+ */
+public class PermissionStateRegistryTest {
+
+
+    private static final String CAMERA = "android.permission.CAMERA";
+    private static final int THREADS = 8;
+
+    private final CountingCallbacks callbacks = new CountingCallbacks();
+
+
+    @Test
+    public void run_severalHelpers_checkOnce() {
+        final FakePermissionBackend host = new FakePermissionBackend().grant(CAMERA);
+        for (int i = 0; i < 5; i++) {
+            new PermissionHelper(host).check(CAMERA)
+                    .onSuccess(callbacks.success)
+                    .onDenied(callbacks.denied)
+                    .run();
+        }
+        assertEquals(1, host.checksCount);
+        assertEquals(5, callbacks.successCount);
+    }
+
+
+    @Test
+    public void onRequestPermissionsResult_publishedToOtherHelpers() {
+        final FakePermissionBackend host = new FakePermissionBackend();
+        final PermissionHelper first = new PermissionHelper(host);
+        final PermissionHelper second = new PermissionHelper(host);
+        first.check(CAMERA).onSuccess(callbacks.success).onDenied(callbacks.denied).run();
+        first.onRequestPermissionsResult(host.requestCode, host.requestedPermissions, new int[]{0});
+        second.check(CAMERA).onSuccess(callbacks.success).onDenied(callbacks.denied).run();
+        assertEquals(1, host.checksCount);
+        assertEquals(1, host.requestsCount);
+        assertEquals(2, callbacks.successCount);
+    }
+
+
+    @Test
+    public void forBackend_differentBackends_separateState() {
+        final FakePermissionBackend host = new FakePermissionBackend();
+        assertSame(PermissionStateRegistry.forBackend(host), PermissionStateRegistry.forBackend(host));
+        assertNotSame(PermissionStateRegistry.forBackend(host), PermissionStateRegistry.forBackend(new FakePermissionBackend()));
+    }
+
+
+    @Test
+    public void run_hostCollected_doesNotPublishDenied() {
+        final FakePermissionBackend host = new FakePermissionBackend().grant(CAMERA);
+        host.hostCollected = true;
+        host.hostGone = true;
+        new PermissionHelper(host).check(CAMERA)
+                .onSuccess(callbacks.success)
+                .onDenied(callbacks.denied)
+                .run();
+        assertEquals(1, callbacks.deniedCount);
+        assertFalse(PermissionStateRegistry.forBackend(host).getDeniedPermissions().contains(CAMERA));
+
+        host.hostCollected = false;
+        host.hostGone = false;
+        new PermissionHelper(host).check(CAMERA).onSuccess(callbacks.success).onDenied(callbacks.denied).run();
+        assertEquals(1, callbacks.successCount);
+        assertEquals(1, host.requestsCount);
+    }
+
+
+    @Test
+    public void isGranted_activityCollected_stateUnknown() throws Exception {
+        final ActivityPermissionBackend backend = new ActivityPermissionBackend(new Activity());
+        for (int attempt = 0; attempt < 20 && backend.getActivity() != null; attempt++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        final PermissionStateRegistry registry = new PermissionStateRegistry();
+        try {
+            registry.isGranted(CAMERA, backend);
+            fail("State of permission without activity should be unknown");
+        } catch (IllegalStateException expected) {
+            assertFalse(registry.getDeniedPermissions().contains(CAMERA));
+        }
+    }
+
+
+    @Test
+    public void isGranted_concurrentLookups_askSystemOnce() throws Exception {
+        final PermissionStateRegistry registry = new PermissionStateRegistry();
+        final BlockingBackend host = new BlockingBackend();
+        final List<Thread> threads = new ArrayList<>();
+        final AtomicInteger grantedCount = new AtomicInteger();
+        for (int i = 0; i < THREADS; i++) {
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    if (registry.isGranted(CAMERA, host)) {
+                        grantedCount.incrementAndGet();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        host.entered.await();
+        Thread.sleep(50);
+        host.release.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1, host.lookupsCount.get());
+        assertEquals(THREADS, grantedCount.get());
+        assertTrue(registry.getGrantedPermissions().contains(CAMERA));
+    }
+
+
+    @Test
+    public void invalidate_duringLookup_doesNotPublishStaleState() throws Exception {
+        final PermissionStateRegistry registry = new PermissionStateRegistry();
+        final BlockingBackend host = new BlockingBackend();
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                registry.isGranted(CAMERA, host);
+            }
+        });
+        thread.start();
+        host.entered.await();
+        registry.invalidate();
+        host.release.countDown();
+        thread.join();
+        assertTrue(registry.getGrantedPermissions().isEmpty());
+        assertTrue(registry.isGranted(CAMERA, host));
+        assertEquals(2, host.lookupsCount.get());
+    }
+
+
+    /**
+     * Backend, which holds lookups until they are released
+     */
+    private static class BlockingBackend extends FakePermissionBackend {
+
+
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger lookupsCount = new AtomicInteger();
+
+
+        @Override
+        public boolean isGranted(String permission) {
+            lookupsCount.incrementAndGet();
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        }
+    }
+}
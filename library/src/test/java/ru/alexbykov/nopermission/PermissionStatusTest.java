@@ -0,0 +1,109 @@
+package ru.alexbykov.nopermission;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks, that status is checked on given executor, delivered on callback executor,
+ * and rationale is resolved only for permissions, which are not granted
+ */
+public class PermissionStatusTest {
+
+
+    private static final String CAMERA = "android.permission.CAMERA";
+    private static final String LOCATION = "android.permission.ACCESS_FINE_LOCATION";
+    private static final String CONTACTS = "android.permission.READ_CONTACTS";
+
+    private final QueueExecutor executor = new QueueExecutor();
+    private final QueueExecutor callbackExecutor = new QueueExecutor();
+    private PermissionStatus status;
+    private final PermissionStatusListener listener = new PermissionStatusListener() {
+        @Override
+        public void onStatus(PermissionStatus status) {
+            PermissionStatusTest.this.status = status;
+        }
+    };
+
+
+    @Test
+    public void statusAsync_checksOnExecutorAndDeliversOnCallbackExecutor() {
+        final FakePermissionBackend host = new FakePermissionBackend().grant(CAMERA).neverAskAgain(CONTACTS);
+        new PermissionHelper(host).statusAsync(executor, callbackExecutor, listener, CAMERA, LOCATION, CONTACTS);
+        assertEquals(0, host.checksCount);
+
+        executor.runAll();
+        assertEquals(3, host.checksCount);
+        assertEquals(2, host.rationaleChecksCount);
+        assertNull(status);
+
+        callbackExecutor.runAll();
+        assertTrue(status.isGranted(CAMERA));
+        assertFalse(status.shouldShowRationale(CAMERA));
+        assertFalse(status.isGranted(LOCATION));
+        assertTrue(status.shouldShowRationale(LOCATION));
+        assertFalse(status.isGranted(CONTACTS));
+        assertFalse(status.shouldShowRationale(CONTACTS));
+        assertFalse(status.isAllGranted());
+    }
+
+
+    @Test
+    public void statusAsync_allGranted_isAllGranted() {
+        final FakePermissionBackend host = new FakePermissionBackend().grant(CAMERA, LOCATION);
+        new PermissionHelper(host).statusAsync(executor, callbackExecutor, listener, CAMERA, LOCATION);
+        executor.runAll();
+        callbackExecutor.runAll();
+        assertTrue(status.isAllGranted());
+        assertEquals(0, host.rationaleChecksCount);
+    }
+
+
+    @Test
+    public void getPermissions_returnsCopy() {
+        final String[] permissions = {CAMERA, LOCATION};
+        new PermissionHelper(new FakePermissionBackend()).statusAsync(executor, callbackExecutor, listener, permissions);
+        permissions[0] = CONTACTS;
+        executor.runAll();
+        callbackExecutor.runAll();
+        status.getPermissions()[0] = CONTACTS;
+        assertArrayEquals(new String[]{CAMERA, LOCATION}, status.getPermissions());
+    }
+
+
+    @Test(expected = IllegalArgumentException.class)
+    public void isGranted_notCheckedPermission_throws() {
+        new PermissionHelper(new FakePermissionBackend()).statusAsync(executor, callbackExecutor, listener, CAMERA);
+        executor.runAll();
+        callbackExecutor.runAll();
+        status.isGranted(LOCATION);
+    }
+
+
+    /**
+     * Executor, which keeps commands until test runs them
+     */
+    private static final class QueueExecutor implements Executor {
+
+        private final List<Runnable> commands = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            commands.add(command);
+        }
+
+        void runAll() {
+            while (!commands.isEmpty()) {
+                commands.remove(0).run();
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package ru.alexbykov.nopermission;
+
+import android.app.Activity;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks, that state checked at warmup is published to registry of system permissions state
+ * and doesn't leak to helpers of custom backends
+ */
+public class PermissionWarmupTest {
+
+
+    private static final String CAMERA = "android.permission.CAMERA";
+    private static final String LOCATION = "android.permission.ACCESS_FINE_LOCATION";
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private final PermissionStateRegistry registry = new PermissionStateRegistry();
+    private final CountingCallbacks callbacks = new CountingCallbacks();
+
+
+    @After
+    public void tearDown() {
+        PermissionStateRegistry.getInstance().invalidate();
+    }
+
+
+    @Test
+    public void check_unknownPermissions_publishedToRegistry() {
+        PermissionWarmup.check(null, new String[]{CAMERA, LOCATION}, registry);
+        assertTrue(registry.getGrantedPermissions().containsAll(PermissionSet.of(CAMERA, LOCATION)));
+    }
+
+
+    @Test
+    public void check_knownPermission_keepsNewerState() {
+        registry.publish(PermissionSet.of(CAMERA), false);
+        PermissionWarmup.check(null, new String[]{CAMERA, LOCATION}, registry);
+        assertTrue(registry.getDeniedPermissions().contains(CAMERA));
+        assertTrue(registry.getGrantedPermissions().contains(LOCATION));
+    }
+
+
+    @Test
+    public void publishUnknown_invalidatedAfterRead_publishesNothing() {
+        final int generation = registry.getGeneration();
+        registry.invalidate();
+        registry.publishUnknown(PermissionSet.of(CAMERA), PermissionSet.of(LOCATION), generation);
+        assertTrue(registry.getGrantedPermissions().isEmpty());
+        assertTrue(registry.getDeniedPermissions().isEmpty());
+    }
+
+
+    @Test
+    public void warmUp_customBackend_doesNotUseWarmedUpState() {
+        PermissionWarmup.warmUp(new Activity(), DIRECT_EXECUTOR, CAMERA);
+        assertTrue(PermissionStateRegistry.getInstance().getGrantedPermissions().contains(CAMERA));
+
+        final FakePermissionBackend host = new FakePermissionBackend();
+        new PermissionHelper(host)
+                .check(CAMERA)
+                .onSuccess(callbacks.success)
+                .onDenied(callbacks.denied)
+                .run();
+        assertEquals(1, host.checksCount);
+        assertArrayEquals(new String[]{CAMERA}, host.requestedPermissions);
+        assertFalse(PermissionStateRegistry.forBackend(host).getGrantedPermissions().contains(CAMERA));
+    }
+}
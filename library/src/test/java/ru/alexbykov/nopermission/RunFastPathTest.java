@@ -0,0 +1,70 @@
+package ru.alexbykov.nopermission;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks, that run() with already granted permissions doesn't ask system and doesn't allocate
+ */
+public class RunFastPathTest {
+
+
+    private static final String CAMERA = "android.permission.CAMERA";
+    private static final String LOCATION = "android.permission.ACCESS_FINE_LOCATION";
+    private static final String CONTACTS = "android.permission.READ_CONTACTS";
+    private static final int WARM_UP_ITERATIONS = 20000;
+    private static final int ITERATIONS = 100000;
+
+    private FakePermissionBackend host;
+    private PermissionHelper permissionHelper;
+    private final CountingCallbacks callbacks = new CountingCallbacks();
+
+
+    @Before
+    public void setUp() {
+        host = new FakePermissionBackend().grant(CAMERA, LOCATION, CONTACTS);
+        permissionHelper = new PermissionHelper(host);
+    }
+
+
+    @Test
+    public void run_allGranted_asksSystemOnlyOnce() {
+        for (int i = 0; i < 10; i++) {
+            runAllGranted();
+        }
+        assertEquals(3, host.checksCount);
+        assertEquals(0, host.requestsCount);
+        assertEquals(10, callbacks.successCount);
+    }
+
+
+    @Test
+    public void run_allGranted_doesNotAllocate() {
+        for (int i = 0; i < WARM_UP_ITERATIONS; i++) {
+            runAllGranted();
+        }
+        final com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        final long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            permissionHelper.run();
+        }
+        final long allocated = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        assertTrue("run() allocated " + allocated + " bytes in " + ITERATIONS + " calls", allocated < ITERATIONS);
+        assertEquals(WARM_UP_ITERATIONS + ITERATIONS, callbacks.successCount);
+    }
+
+
+    private void runAllGranted() {
+        permissionHelper.check(CAMERA, LOCATION, CONTACTS)
+                .onSuccess(callbacks.success)
+                .onDenied(callbacks.denied)
+                .run();
+    }
+}
@@ -0,0 +1,64 @@
+package ru.alexbykov.nopermission;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs many request/result cycles on simulated backend
+ */
+public class SimulatedPermissionBackendTest {
+
+
+    private static final String CAMERA = "android.permission.CAMERA";
+    private static final String LOCATION = "android.permission.ACCESS_FINE_LOCATION";
+    private static final int CYCLES = 5000;
+
+    private final CountingCallbacks callbacks = new CountingCallbacks();
+
+
+    @Test
+    public void run_deniedCycles_asksEveryTime() {
+        final SimulatedPermissionBackend backend = new SimulatedPermissionBackend()
+                .answer(SimulatedPermissionBackend.ANSWER_DENY, CAMERA);
+        final PermissionRequest request = new PermissionRequest.Builder()
+                .check(CAMERA)
+                .onSuccess(callbacks.success)
+                .onDenied(callbacks.denied)
+                .build();
+        final PermissionHelper permissionHelper = backend.createHelper();
+        for (int i = 0; i < CYCLES; i++) {
+            permissionHelper.run(request);
+        }
+        assertEquals(CYCLES, callbacks.deniedCount);
+        assertEquals(CYCLES, backend.getRequestsCount());
+        assertEquals(0, callbacks.successCount);
+    }
+
+
+    @Test
+    public void run_scriptedAnswers_followSystemRules() {
+        final SimulatedPermissionBackend backend = new SimulatedPermissionBackend()
+                .answer(SimulatedPermissionBackend.ANSWER_NEVER_ASK_AGAIN, LOCATION);
+        final PermissionRequest cameraRequest = new PermissionRequest.Builder()
+                .check(CAMERA)
+                .onSuccess(callbacks.success)
+                .onDenied(callbacks.denied)
+                .build();
+        final PermissionRequest locationRequest = new PermissionRequest.Builder()
+                .check(LOCATION)
+                .onSuccess(callbacks.success)
+                .onDenied(callbacks.denied)
+                .onNeverAskAgain(callbacks.neverAskAgain)
+                .build();
+        final PermissionHelper permissionHelper = backend.createHelper();
+        permissionHelper.run(cameraRequest);
+        permissionHelper.run(cameraRequest);
+        permissionHelper.run(locationRequest);
+        permissionHelper.run(locationRequest);
+
+        assertEquals(2, callbacks.successCount);
+        assertEquals(2, callbacks.neverAskAgainCount);
+        assertEquals(3, backend.getRequestsCount());
+    }
+}
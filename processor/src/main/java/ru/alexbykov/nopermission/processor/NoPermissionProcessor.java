@@ -0,0 +1,335 @@
+package ru.alexbykov.nopermission.processor;
+
+import org.w3c.dom.NodeList;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+/**
+ * Generates class "&lt;enclosing class&gt;Permissions" with PermissionSpec constant
+ * for each method and field, annotated with NeedsPermissions.
+ * Permissions are checked against manifests, if option "noPermission.manifest" is set:
+ * <pre>
+ * javaCompileOptions {
+ *     annotationProcessorOptions {
+ *         arguments = ['noPermission.manifest': file('src/main/AndroidManifest.xml').path]
+ *     }
+ * }
+ * </pre>
+ * Several manifests, for example of main source set and of flavor, are separated with path separator.
+ * Processor doesn't merge manifests: permissions, declared only by dependencies, are reported as undeclared,
+ * and uses-permission with tools:node="remove" in any of given manifests removes permission.
+ * Library is not on classpath of processor, so annotation is read by its name.
+ */
+@SupportedAnnotationTypes(NoPermissionProcessor.ANNOTATION)
+@SupportedOptions(NoPermissionProcessor.OPTION_MANIFEST)
+public final class NoPermissionProcessor extends AbstractProcessor {
+
+
+    static final String ANNOTATION = "ru.alexbykov.nopermission.NeedsPermissions";
+    static final String OPTION_MANIFEST = "noPermission.manifest";
+    private static final String GENERATED_SUFFIX = "Permissions";
+    private static final String ANDROID_NAMESPACE = "http://schemas.android.com/apk/res/android";
+    private static final String TOOLS_NAMESPACE = "http://schemas.android.com/tools";
+    private static final String NODE_REMOVE = "remove";
+    private static final String[] USES_PERMISSION_TAGS = {"uses-permission", "uses-permission-sdk-23"};
+    private Elements elements;
+    private Set<String> declaredPermissions;
+
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+        elements = processingEnv.getElementUtils();
+        final String manifestPaths = processingEnv.getOptions().get(OPTION_MANIFEST);
+        if (manifestPaths != null) {
+            declaredPermissions = readDeclaredPermissions(manifestPaths.split(File.pathSeparator));
+        }
+    }
+
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        final TypeElement annotation = elements.getTypeElement(ANNOTATION);
+        if (annotation == null || annotations.isEmpty()) {
+            return false;
+        }
+        final Map<TypeElement, List<PermissionElement>> elementsByType = new LinkedHashMap<>();
+        for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+            final PermissionElement permissionElement = readElement(element);
+            if (permissionElement == null) {
+                continue;
+            }
+            final TypeElement type = (TypeElement) element.getEnclosingElement();
+            List<PermissionElement> typeElements = elementsByType.get(type);
+            if (typeElements == null) {
+                typeElements = new ArrayList<>();
+                elementsByType.put(type, typeElements);
+            }
+            typeElements.add(permissionElement);
+        }
+        for (Map.Entry<TypeElement, List<PermissionElement>> entry : elementsByType.entrySet()) {
+            writeType(entry.getKey(), entry.getValue());
+        }
+        return true;
+    }
+
+
+    /**
+     * This method read and validate annotation of element
+     *
+     * @return element with annotation values, or null if annotation is not valid, error is reported then
+     */
+    private PermissionElement readElement(Element element) {
+        final AnnotationMirror mirror = getAnnotationMirror(element);
+        final Map<String, Object> values = new LinkedHashMap<>();
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                : elements.getElementValuesWithDefaults(mirror).entrySet()) {
+            values.put(entry.getKey().getSimpleName().toString(), entry.getValue().getValue());
+        }
+        final List<String> permissions = new ArrayList<>();
+        for (Object value : (List<?>) values.get("value")) {
+            permissions.add((String) ((AnnotationValue) value).getValue());
+        }
+        final PermissionElement permissionElement = new PermissionElement(element, permissions,
+                (Integer) values.get("dialogTitle"),
+                (Integer) values.get("dialogMessage"),
+                (Integer) values.get("dialogPositiveButton"),
+                (Integer) values.get("dialogPositiveButtonColor"));
+        return isValid(permissionElement, mirror) ? permissionElement : null;
+    }
+
+
+    private AnnotationMirror getAnnotationMirror(Element element) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(ANNOTATION)) {
+                return mirror;
+            }
+        }
+        throw new IllegalStateException("Element " + element + " is not annotated with " + ANNOTATION);
+    }
+
+
+    private boolean isValid(PermissionElement element, AnnotationMirror mirror) {
+        boolean valid = true;
+        if (element.permissions.isEmpty()) {
+            error(element.element, mirror, "@NeedsPermissions has no permissions");
+            valid = false;
+        }
+        for (String permission : element.permissions) {
+            if (permission.trim().isEmpty()) {
+                error(element.element, mirror, "@NeedsPermissions has empty permission");
+                valid = false;
+            } else if (declaredPermissions != null && !declaredPermissions.contains(permission)) {
+                error(element.element, mirror, "Permission " + permission + " is not declared in manifest. "
+                        + "Add <uses-permission android:name=\"" + permission + "\" /> to AndroidManifest.xml");
+                valid = false;
+            }
+        }
+        final boolean withDialog = element.dialogTitle != 0 || element.dialogMessage != 0 || element.dialogPositiveButton != 0;
+        if (withDialog && (element.dialogTitle == 0 || element.dialogMessage == 0 || element.dialogPositiveButton == 0)) {
+            error(element.element, mirror, "Dialog before run needs dialogTitle, dialogMessage and dialogPositiveButton");
+            valid = false;
+        }
+        if (!withDialog && element.dialogPositiveButtonColor != 0) {
+            error(element.element, mirror, "dialogPositiveButtonColor is set without dialog before run");
+            valid = false;
+        }
+        return valid;
+    }
+
+
+    private void writeType(TypeElement type, List<PermissionElement> typeElements) {
+        final String packageName = elements.getPackageOf(type).getQualifiedName().toString();
+        final String className = getGeneratedName(type, packageName);
+        final Set<String> constants = new HashSet<>();
+        final StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("import ru.alexbykov.nopermission.PermissionSpec;\n\n")
+                .append("/**\n")
+                .append(" * Generated by NoPermission annotation processor from {@link ")
+                .append(type.getQualifiedName()).append("}, don't edit it\n")
+                .append(" */\n")
+                .append("public final class ").append(className).append(" {\n\n\n");
+        for (PermissionElement element : typeElements) {
+            final String constant = getConstantName(element.element.getSimpleName().toString());
+            if (!constants.add(constant)) {
+                error(element.element, null, "Several elements of " + type.getSimpleName()
+                        + " have constant " + constant + ", overloaded methods should have different names");
+                return;
+            }
+            appendConstant(source, constant, element);
+        }
+        source.append("\n    private ").append(className).append("() {\n")
+                .append("    }\n")
+                .append("}\n");
+        final String qualifiedName = packageName.isEmpty() ? className : packageName + "." + className;
+        try {
+            final JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, type);
+            final Writer writer = file.openWriter();
+            try {
+                writer.write(source.toString());
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            error(type, null, "Can't write " + qualifiedName + ": " + e.getMessage());
+        }
+    }
+
+
+    private void appendConstant(StringBuilder source, String constant, PermissionElement element) {
+        source.append("    public static final PermissionSpec ").append(constant).append(" = PermissionSpec.of(");
+        for (int i = 0; i < element.permissions.size(); i++) {
+            if (i > 0) {
+                source.append(", ");
+            }
+            source.append(elements.getConstantExpression(element.permissions.get(i)));
+        }
+        source.append(")");
+        if (element.dialogTitle != 0) {
+            source.append("\n            .withDialogBeforeRun(")
+                    .append(element.dialogTitle).append(", ")
+                    .append(element.dialogMessage).append(", ")
+                    .append(element.dialogPositiveButton).append(")");
+        }
+        if (element.dialogPositiveButtonColor != 0) {
+            source.append("\n            .setDialogPositiveButtonColor(").append(element.dialogPositiveButtonColor).append(")");
+        }
+        source.append(";\n");
+    }
+
+
+    /**
+     * @return name of generated class, nested classes are joined with underscore
+     */
+    private static String getGeneratedName(TypeElement type, String packageName) {
+        final String qualifiedName = type.getQualifiedName().toString();
+        final String nestedName = packageName.isEmpty() ? qualifiedName : qualifiedName.substring(packageName.length() + 1);
+        return nestedName.replace('.', '_') + GENERATED_SUFFIX;
+    }
+
+
+    /**
+     * @param name name of method or field, for example openCamera
+     * @return name of constant, for example OPEN_CAMERA
+     */
+    static String getConstantName(String name) {
+        final StringBuilder constant = new StringBuilder(name.length() + 4);
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            if (i > 0 && Character.isUpperCase(c) && !Character.isUpperCase(name.charAt(i - 1)) && name.charAt(i - 1) != '_') {
+                constant.append('_');
+            }
+            constant.append(Character.toUpperCase(c));
+        }
+        return constant.toString();
+    }
+
+
+    /**
+     * @param manifestPaths paths of manifests
+     * @return permissions of uses-permission tags of manifests, except removed with tools:node="remove"
+     */
+    private Set<String> readDeclaredPermissions(String[] manifestPaths) {
+        final Set<String> permissions = new HashSet<>();
+        final Set<String> removedPermissions = new HashSet<>();
+        for (String manifestPath : manifestPaths) {
+            if (!manifestPath.isEmpty()) {
+                readDeclaredPermissions(new File(manifestPath), permissions, removedPermissions);
+            }
+        }
+        permissions.removeAll(removedPermissions);
+        return permissions;
+    }
+
+
+    private void readDeclaredPermissions(File manifest, Set<String> permissions, Set<String> removedPermissions) {
+        try {
+            final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            final org.w3c.dom.Document document = factory.newDocumentBuilder().parse(manifest);
+            for (String tag : USES_PERMISSION_TAGS) {
+                final NodeList nodes = document.getElementsByTagName(tag);
+                for (int i = 0; i < nodes.getLength(); i++) {
+                    final org.w3c.dom.Element node = (org.w3c.dom.Element) nodes.item(i);
+                    final String permission = node.getAttributeNS(ANDROID_NAMESPACE, "name");
+                    if (NODE_REMOVE.equals(node.getAttributeNS(TOOLS_NAMESPACE, "node"))) {
+                        removedPermissions.add(permission);
+                    } else {
+                        permissions.add(permission);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Can't read manifest " + manifest + " of option " + OPTION_MANIFEST + ": " + e.getMessage());
+        }
+    }
+
+
+    private void error(Element element, AnnotationMirror mirror, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element, mirror);
+    }
+
+
+    /**
+     * Values of one annotation
+     */
+    private static final class PermissionElement {
+
+
+        final Element element;
+        final List<String> permissions;
+        final int dialogTitle;
+        final int dialogMessage;
+        final int dialogPositiveButton;
+        final int dialogPositiveButtonColor;
+
+
+        PermissionElement(Element element,
+                          List<String> permissions,
+                          int dialogTitle,
+                          int dialogMessage,
+                          int dialogPositiveButton,
+                          int dialogPositiveButtonColor) {
+            this.element = element;
+            this.permissions = permissions;
+            this.dialogTitle = dialogTitle;
+            this.dialogMessage = dialogMessage;
+            this.dialogPositiveButton = dialogPositiveButton;
+            this.dialogPositiveButtonColor = dialogPositiveButtonColor;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package ru.alexbykov.nopermission.processor;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks, that specs are generated and undeclared permissions fail compilation.
+ * Library is compiled for Android, so its annotation and spec are replaced with minimal sources
+ */
+public class NoPermissionProcessorTest {
+
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String ANNOTATION_SOURCE = "package ru.alexbykov.nopermission;\n"
+            + "public @interface NeedsPermissions {\n"
+            + "    String[] value();\n"
+            + "    int dialogTitle() default 0;\n"
+            + "    int dialogMessage() default 0;\n"
+            + "    int dialogPositiveButton() default 0;\n"
+            + "    int dialogPositiveButtonColor() default 0;\n"
+            + "}\n";
+    private static final String SPEC_SOURCE = "package ru.alexbykov.nopermission;\n"
+            + "public final class PermissionSpec {\n"
+            + "    public static PermissionSpec of(String... permissions) { return new PermissionSpec(); }\n"
+            + "    public PermissionSpec withDialogBeforeRun(int title, int message, int button) { return this; }\n"
+            + "    public PermissionSpec setDialogPositiveButtonColor(int color) { return this; }\n"
+            + "}\n";
+    private static final String ACTIVITY_SOURCE = "package sample;\n"
+            + "import ru.alexbykov.nopermission.NeedsPermissions;\n"
+            + "class CameraActivity {\n"
+            + "    @NeedsPermissions(value = {\"android.permission.CAMERA\", \"android.permission.RECORD_AUDIO\"},\n"
+            + "            dialogTitle = 1, dialogMessage = 2, dialogPositiveButton = 3, dialogPositiveButtonColor = 4)\n"
+            + "    void recordVideo() {\n"
+            + "    }\n"
+            + "    @NeedsPermissions(\"android.permission.CAMERA\")\n"
+            + "    static final String TAKE_PHOTO = \"photo\";\n"
+            + "}\n";
+    private static final String MANIFEST = "<manifest xmlns:android=\"http://schemas.android.com/apk/res/android\">\n"
+            + "    <uses-permission android:name=\"android.permission.CAMERA\" />\n"
+            + "</manifest>\n";
+    private static final String FLAVOR_MANIFEST = "<manifest xmlns:android=\"http://schemas.android.com/apk/res/android\"\n"
+            + "    xmlns:tools=\"http://schemas.android.com/tools\">\n"
+            + "    <uses-permission android:name=\"android.permission.RECORD_AUDIO\" />\n"
+            + "    <uses-permission android:name=\"android.permission.CAMERA\" tools:node=\"remove\" />\n"
+            + "</manifest>\n";
+
+
+    @Test
+    public void getConstantName_camelCase_upperSnakeCase() {
+        assertEquals("OPEN_CAMERA", NoPermissionProcessor.getConstantName("openCamera"));
+        assertEquals("TAKE_PHOTO", NoPermissionProcessor.getConstantName("TAKE_PHOTO"));
+        assertEquals("SCAN_QR2_CODE", NoPermissionProcessor.getConstantName("scanQr2Code"));
+    }
+
+
+    @Test
+    public void process_annotatedElements_generatesSpecs() throws IOException {
+        final File outputDir = Files.createTempDirectory("processor").toFile();
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        assertTrue(compile(outputDir, diagnostics));
+        final String generated = new String(Files.readAllBytes(
+                new File(outputDir, "sample/CameraActivityPermissions.java").toPath()), UTF_8);
+        assertTrue(generated, generated.contains("public static final PermissionSpec RECORD_VIDEO = PermissionSpec.of("
+                + "\"android.permission.CAMERA\", \"android.permission.RECORD_AUDIO\")\n"
+                + "            .withDialogBeforeRun(1, 2, 3)\n"
+                + "            .setDialogPositiveButtonColor(4);"));
+        assertTrue(generated, generated.contains(
+                "public static final PermissionSpec TAKE_PHOTO = PermissionSpec.of(\"android.permission.CAMERA\");"));
+    }
+
+
+    @Test
+    public void process_undeclaredPermission_failsCompilation() throws IOException {
+        final File outputDir = Files.createTempDirectory("processor").toFile();
+        final File manifest = new File(outputDir, "AndroidManifest.xml");
+        Files.write(manifest.toPath(), MANIFEST.getBytes(UTF_8));
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        assertFalse(compile(outputDir, diagnostics, "-A" + NoPermissionProcessor.OPTION_MANIFEST + "=" + manifest.getPath()));
+        final List<String> errors = getErrors(diagnostics);
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0), errors.get(0).contains("android.permission.RECORD_AUDIO is not declared in manifest"));
+    }
+
+
+    @Test
+    public void process_severalManifests_removedPermissionIsUndeclared() throws IOException {
+        final File outputDir = Files.createTempDirectory("processor").toFile();
+        final File manifest = new File(outputDir, "AndroidManifest.xml");
+        final File flavorManifest = new File(outputDir, "FlavorAndroidManifest.xml");
+        Files.write(manifest.toPath(), MANIFEST.getBytes(UTF_8));
+        Files.write(flavorManifest.toPath(), FLAVOR_MANIFEST.getBytes(UTF_8));
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        assertFalse(compile(outputDir, diagnostics, "-A" + NoPermissionProcessor.OPTION_MANIFEST + "="
+                + manifest.getPath() + File.pathSeparator + flavorManifest.getPath()));
+        final List<String> errors = getErrors(diagnostics);
+        assertEquals(2, errors.size());
+        for (String error : errors) {
+            assertTrue(error, error.contains("android.permission.CAMERA is not declared in manifest"));
+        }
+    }
+
+
+    private static List<String> getErrors(DiagnosticCollector<JavaFileObject> diagnostics) {
+        final List<String> errors = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(diagnostic.getMessage(null));
+            }
+        }
+        return errors;
+    }
+
+
+    private static boolean compile(File outputDir, DiagnosticCollector<JavaFileObject> diagnostics, String... options) {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final List<String> allOptions = new ArrayList<>(Arrays.asList(
+                "-proc:only",
+                "-processor", NoPermissionProcessor.class.getName(),
+                "-s", outputDir.getPath(),
+                "-d", outputDir.getPath()));
+        allOptions.addAll(Arrays.asList(options));
+        final List<JavaFileObject> sources = Arrays.asList(
+                source("ru/alexbykov/nopermission/NeedsPermissions", ANNOTATION_SOURCE),
+                source("ru/alexbykov/nopermission/PermissionSpec", SPEC_SOURCE),
+                source("sample/CameraActivity", ACTIVITY_SOURCE));
+        return compiler.getTask(null, null, diagnostics, allOptions, null, sources).call();
+    }
+
+
+    private static JavaFileObject source(String path, final String code) {
+        return new SimpleJavaFileObject(URI.create("string:///" + path + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return code;
+            }
+        };
+    }
+}
@@ -7,6 +7,7 @@ import android.support.v7.app.AppCompatActivity;
 import android.util.Log;
 import android.widget.TextView;
 
+import ru.alexbykov.nopermission.NeedsPermissions;
 import ru.alexbykov.nopermission.PermissionHelper;
 import ru.alexbykov.permissionssample.R;
 
@@ -36,10 +37,13 @@ public class LocationSampleActivity extends AppCompatActivity {
         findViewById(R.id.btnAskPermission).setOnClickListener(view -> askLocationPermission());
     }
 
+    @NeedsPermissions(value = Manifest.permission.ACCESS_COARSE_LOCATION,
+            dialogTitle = R.string.dialog_before_run_title,
+            dialogMessage = R.string.dialog_before_run_message,
+            dialogPositiveButton = R.string.dialog_positive_button,
+            dialogPositiveButtonColor = android.R.color.holo_orange_dark)
     private void askLocationPermission() {
-        permissionHelper.check(Manifest.permission.ACCESS_COARSE_LOCATION)
-                .withDialogBeforeRun(R.string.dialog_before_run_title, R.string.dialog_before_run_message, R.string.dialog_positive_button)
-                .setDialogPositiveButtonColor(android.R.color.holo_orange_dark)
+        permissionHelper.check(LocationSampleActivityPermissions.ASK_LOCATION_PERMISSION)
                 .onSuccess(this::onSuccess)
                 .onDenied(this::onDenied)
                 .onNeverAskAgain(this::onNeverAskAgain)